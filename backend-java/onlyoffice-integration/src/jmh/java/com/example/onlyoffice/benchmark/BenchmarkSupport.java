@@ -0,0 +1,81 @@
+package com.example.onlyoffice.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.service.ServiceMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * 基准测试公共方法
+ *
+ * 不启动 Spring 容器，直接创建服务对象
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+final class BenchmarkSupport {
+
+    static final String JWT_SECRET = "benchmark-secret-key-for-jmh";
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * 关闭业务日志，避免日志输出影响测量结果
+     */
+    static void quietLogging() {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+
+    /**
+     * 与 Spring Boot 默认配置一致的 ObjectMapper
+     */
+    static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    /**
+     * 记录到内存中的服务指标（与生产环境一样发布百分位直方图）
+     */
+    static ServiceMetrics metrics() {
+        return new ServiceMetrics(new SimpleMeterRegistry());
+    }
+
+    /**
+     * 使用指定存储目录的配置
+     */
+    static OnlyOfficeProperties properties(Path uploadDir) {
+        OnlyOfficeProperties properties = new OnlyOfficeProperties();
+        properties.getJwt().setSecret(JWT_SECRET);
+        properties.getStorage().setUploadDir(uploadDir.toString());
+        return properties;
+    }
+
+    /**
+     * 删除目录及其内容
+     */
+    static void deleteRecursively(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new IllegalStateException("删除失败: " + path, e);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.onlyoffice.benchmark;
+
+import com.example.onlyoffice.dto.CallbackDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回调请求反序列化，history.changes 条数不同
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallbackDeserializationBenchmark {
+
+    @Param({"0", "10", "100", "1000"})
+    public int historySize;
+
+    private ObjectMapper objectMapper;
+    private byte[] body;
+
+    @Setup
+    public void setup() {
+        objectMapper = BenchmarkSupport.objectMapper();
+        body = callbackJson(historySize).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public CallbackDTO deserialize() throws Exception {
+        return objectMapper.readValue(body, CallbackDTO.class);
+    }
+
+    /**
+     * 构造 status 2 回调，包含指定条数的变更历史
+     */
+    static String callbackJson(int historySize) {
+        StringBuilder json = new StringBuilder(256 + historySize * 96);
+        json.append("{\"key\":\"YmVuY2htYXJr_1704067200000\",\"status\":2,")
+                .append("\"url\":\"http://onlyoffice/cache/files/data/benchmark/output.docx?md5=abc&expires=1704070800\",")
+                .append("\"changesurl\":\"http://onlyoffice/cache/files/data/benchmark/changes.zip?md5=abc&expires=1704070800\",")
+                .append("\"filetype\":\"docx\",\"lastsave\":\"2024-01-01T00:00:00.000Z\",")
+                .append("\"users\":[\"user1\"],\"actions\":[{\"type\":0,\"userid\":\"user1\"}],")
+                .append("\"history\":{\"serverVersion\":\"7.5.1\",\"changes\":[");
+        for (int i = 0; i < historySize; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"created\":\"2024-01-01 00:00:").append(i % 60)
+                    .append("\",\"user\":{\"id\":\"user").append(i % 8)
+                    .append("\",\"name\":\"用户").append(i % 8).append("\"}}");
+        }
+        json.append("]}}");
+        return json.toString();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.onlyoffice.benchmark;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.dto.DocumentConfigDTO;
+import com.example.onlyoffice.service.DocumentConfigCache;
+import com.example.onlyoffice.service.DocumentService;
+import com.example.onlyoffice.service.EditSessionRegistry;
+import com.example.onlyoffice.service.FileStorageService;
+import com.example.onlyoffice.service.HistoryStore;
+import com.example.onlyoffice.service.JwtService;
+import com.example.onlyoffice.service.ServiceMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 获取编辑器配置（构建、签名、序列化响应）
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentConfigBenchmark {
+
+    @Param({"true", "false"})
+    public boolean cache;
+
+    private Path uploadDir;
+    private FileStorageService fileStorageService;
+    private DocumentService documentService;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSupport.quietLogging();
+        uploadDir = Files.createTempDirectory("jmh-config");
+        Files.write(uploadDir.resolve("benchmark.docx"), new byte[1024]);
+
+        objectMapper = BenchmarkSupport.objectMapper();
+        OnlyOfficeProperties properties = BenchmarkSupport.properties(uploadDir);
+        properties.getConfigCache().setEnabled(cache);
+        ServiceMetrics metrics = BenchmarkSupport.metrics();
+
+        fileStorageService = new FileStorageService(properties, metrics);
+        fileStorageService.init();
+        JwtService jwtService = new JwtService(properties, objectMapper, metrics);
+        jwtService.init();
+        DocumentConfigCache configCache = new DocumentConfigCache(properties);
+        configCache.init();
+        properties.getHistory().setEnabled(false);
+        HistoryStore historyStore = new HistoryStore(properties, fileStorageService, objectMapper);
+        historyStore.init();
+
+        // 获取配置不涉及回调下载和保存队列；编辑人数不限制时预留名额直接通过
+        documentService = new DocumentService(properties, jwtService, fileStorageService,
+                null, null, null, null, configCache, null, new EditSessionRegistry(properties), historyStore,
+                metrics);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fileStorageService.destroy();
+        BenchmarkSupport.deleteRecursively(uploadDir);
+    }
+
+    @Benchmark
+    public DocumentConfigDTO getDocumentConfig() {
+        return documentService.getDocumentConfig("benchmark", "docx", "user1", "张三", "edit");
+    }
+
+    @Benchmark
+    public byte[] getDocumentConfigResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(
+                documentService.getDocumentConfig("benchmark", "docx", "user1", "张三", "edit"));
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.onlyoffice.benchmark;
+
+import com.example.onlyoffice.OnlyOfficeApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通过 HTTP 下载文档：静态资源处理（/uploads/**）与下载接口（/api/files/{id}）对比
+ *
+ * 启动完整的应用，使用 HTTP 客户端下载 1MB 和 100MB 文档：
+ * download 为完整下载，revalidate 为携带上次响应的 ETag / Last-Modified 重新请求（重新打开文档）
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileDownloadBenchmark {
+
+    /**
+     * 文件大小: 1MB, 100MB
+     */
+    @Param({"1048576", "104857600"})
+    public int size;
+
+    /**
+     * uploads: 静态资源处理, files: 下载接口
+     */
+    @Param({"uploads", "files"})
+    public String endpoint;
+
+    private Path workDir;
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private URI uri;
+    private String etag;
+    private String lastModified;
+
+    @Setup
+    public void setup() throws Exception {
+        workDir = Files.createTempDirectory("jmh-download");
+        Path uploadDir = Files.createDirectories(workDir.resolve("uploads"));
+        writeRandom(uploadDir.resolve("benchmark.docx"), size);
+
+        // 命令行参数优先于 application.yml
+        context = new SpringApplicationBuilder(OnlyOfficeApplication.class)
+                .run("--server.port=0",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.example.onlyoffice=WARN",
+                        "--logging.file.name=" + workDir.resolve("benchmark.log"),
+                        "--onlyoffice.jwt.secret=" + BenchmarkSupport.JWT_SECRET,
+                        "--onlyoffice.storage.upload-dir=" + uploadDir,
+                        "--onlyoffice.callback.journal-dir=" + workDir.resolve("journal"));
+        String port = context.getEnvironment().getProperty("local.server.port");
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        uri = URI.create("uploads".equals(endpoint)
+                ? "http://localhost:" + port + "/uploads/benchmark.docx"
+                : "http://localhost:" + port + "/api/files/benchmark?fileType=docx");
+
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri).build(),
+                HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("下载失败: " + response.statusCode());
+        }
+        etag = response.headers().firstValue("ETag").orElse(null);
+        lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (context != null) {
+            context.close();
+        }
+        BenchmarkSupport.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public int download() throws Exception {
+        return client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.discarding())
+                .statusCode();
+    }
+
+    @Benchmark
+    public int revalidate() throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri);
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            request.header("If-Modified-Since", lastModified);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static void writeRandom(Path path, int size) throws Exception {
+        byte[] buffer = new byte[1024 * 1024];
+        try (OutputStream out = Files.newOutputStream(path)) {
+            for (int written = 0; written < size; written += buffer.length) {
+                ThreadLocalRandom.current().nextBytes(buffer);
+                out.write(buffer, 0, Math.min(buffer.length, size - written));
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.onlyoffice.benchmark;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.dto.DocumentConfigDTO;
+import com.example.onlyoffice.service.JwtService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT 签名和验证
+ *
+ * legacy* 为旧版实现，用于对比
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    private JwtService jwtService;
+    private LegacyJwtCodec legacyCodec;
+    private Map<String, Object> payload;
+    private String token;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSupport.quietLogging();
+        ObjectMapper objectMapper = BenchmarkSupport.objectMapper();
+        OnlyOfficeProperties properties = BenchmarkSupport.properties(Paths.get("."));
+
+        jwtService = new JwtService(properties, objectMapper, BenchmarkSupport.metrics());
+        jwtService.init();
+        legacyCodec = new LegacyJwtCodec(objectMapper, BenchmarkSupport.JWT_SECRET, properties.getJwt().getExpiresIn());
+
+        payload = configPayload();
+        token = jwtService.createToken(payload);
+    }
+
+    @Benchmark
+    public String createToken() {
+        return jwtService.createToken(payload);
+    }
+
+    @Benchmark
+    public Map<String, Object> verifyToken() {
+        return jwtService.verifyToken(token);
+    }
+
+    @Benchmark
+    public String legacyCreateToken() throws Exception {
+        return legacyCodec.createToken(payload);
+    }
+
+    @Benchmark
+    public Map<String, Object> legacyVerifyToken() throws Exception {
+        return legacyCodec.verifyToken(token);
+    }
+
+    /**
+     * 与 DocumentService 签名的编辑器配置相同结构的 payload
+     */
+    static Map<String, Object> configPayload() {
+        DocumentConfigDTO.Document document = DocumentConfigDTO.Document.builder()
+                .fileType("docx")
+                .key("YmVuY2htYXJr_1704067200000")
+                .title("benchmark.docx")
+                .url("http://host.docker.internal:3000/uploads/benchmark.docx")
+                .permissions(DocumentConfigDTO.Permissions.builder()
+                        .download(true)
+                        .edit(true)
+                        .print(true)
+                        .review(true)
+                        .comment(true)
+                        .fillForms(true)
+                        .build())
+                .build();
+        DocumentConfigDTO.EditorConfig editorConfig = DocumentConfigDTO.EditorConfig.builder()
+                .callbackUrl("http://host.docker.internal:3000/api/office/callback")
+                .lang("zh-CN")
+                .mode("edit")
+                .user(DocumentConfigDTO.User.builder()
+                        .id("user1")
+                        .name("张三")
+                        .build())
+                .customization(DocumentConfigDTO.Customization.builder()
+                        .autosave(true)
+                        .forcesave(true)
+                        .chat(false)
+                        .comments(true)
+                        .help(true)
+                        .compactToolbar(false)
+                        .build())
+                .build();
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("document", document);
+        payload.put("editorConfig", editorConfig);
+        payload.put("documentType", "word");
+        return payload;
+    }
+}
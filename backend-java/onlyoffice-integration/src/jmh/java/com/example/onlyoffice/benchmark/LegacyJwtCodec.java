@@ -0,0 +1,85 @@
+package com.example.onlyoffice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 旧版 JwtService 的签名和验证实现（仅作为基准对照）
+ *
+ * 每次签名创建并初始化 Mac，Header 每次重新序列化，
+ * createToken(Object) 经过 JSON 往返转换为 Map，验证时按正则拆分并比较 Base64 字符串
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+class LegacyJwtCodec {
+
+    private final ObjectMapper objectMapper;
+    private final byte[] secretKeyBytes;
+    private final int expiresIn;
+
+    LegacyJwtCodec(ObjectMapper objectMapper, String secret, int expiresIn) {
+        this.objectMapper = objectMapper;
+        this.secretKeyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        this.expiresIn = expiresIn;
+    }
+
+    String createToken(Object payload) throws Exception {
+        String json = objectMapper.writeValueAsString(payload);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> claims = objectMapper.readValue(json, Map.class);
+        return createToken(claims);
+    }
+
+    String createToken(Map<String, Object> claims) throws Exception {
+        long now = System.currentTimeMillis() / 1000;
+
+        Map<String, Object> fullClaims = new HashMap<>(claims);
+        fullClaims.put("iat", now);
+        fullClaims.put("exp", now + expiresIn);
+
+        Map<String, String> header = new HashMap<>();
+        header.put("alg", "HS256");
+        header.put("typ", "JWT");
+
+        String headerBase64 = base64UrlEncode(objectMapper.writeValueAsString(header).getBytes(StandardCharsets.UTF_8));
+        String payloadBase64 = base64UrlEncode(objectMapper.writeValueAsString(fullClaims).getBytes(StandardCharsets.UTF_8));
+
+        String dataToSign = headerBase64 + "." + payloadBase64;
+        return dataToSign + "." + base64UrlEncode(hmacSha256(dataToSign.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    Map<String, Object> verifyToken(String token) throws Exception {
+        String[] parts = token.split("\\.");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid JWT format");
+        }
+
+        String dataToSign = parts[0] + "." + parts[1];
+        String expected = base64UrlEncode(hmacSha256(dataToSign.getBytes(StandardCharsets.UTF_8)));
+        if (!expected.equals(parts[2])) {
+            throw new IllegalArgumentException("JWT signature verification failed");
+        }
+
+        String payloadJson = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> claims = objectMapper.readValue(payloadJson, Map.class);
+        return claims;
+    }
+
+    private byte[] hmacSha256(byte[] data) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secretKeyBytes, "HmacSHA256"));
+        return mac.doFinal(data);
+    }
+
+    private static String base64UrlEncode(byte[] data) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(data);
+    }
+}
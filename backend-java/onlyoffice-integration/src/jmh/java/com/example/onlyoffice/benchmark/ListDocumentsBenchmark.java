@@ -0,0 +1,77 @@
+package com.example.onlyoffice.benchmark;
+
+import com.example.onlyoffice.service.DocumentIndex;
+import com.example.onlyoffice.service.FileStorageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 获取文档列表（全部 / 按修改时间倒序的第一页），存储目录中文件数不同
+ *
+ * 准备 100 万个文件需要较长时间，只需要小规模时可以指定 -p fileCount=1000
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ListDocumentsBenchmark {
+
+    private static final String[] FILE_TYPES = {"docx", "xlsx", "pptx", "pdf"};
+
+    @Param({"1000", "100000", "1000000"})
+    public int fileCount;
+
+    private Path uploadDir;
+    private FileStorageService fileStorageService;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSupport.quietLogging();
+        uploadDir = Files.createTempDirectory("jmh-list");
+        for (int i = 0; i < fileCount; i++) {
+            Files.createFile(uploadDir.resolve("document-" + i + "." + FILE_TYPES[i % FILE_TYPES.length]));
+        }
+
+        fileStorageService = new FileStorageService(BenchmarkSupport.properties(uploadDir), BenchmarkSupport.metrics());
+        fileStorageService.init();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fileStorageService.destroy();
+        BenchmarkSupport.deleteRecursively(uploadDir);
+    }
+
+    @Benchmark
+    public List<String> listDocuments() {
+        return fileStorageService.listDocuments();
+    }
+
+    @Benchmark
+    public List<DocumentIndex.Entry> listFirstPageByMtime() {
+        return fileStorageService.listDocuments(DocumentIndex.SortField.MTIME, true, null, null)
+                .limit(50)
+                .collect(Collectors.toList());
+    }
+}
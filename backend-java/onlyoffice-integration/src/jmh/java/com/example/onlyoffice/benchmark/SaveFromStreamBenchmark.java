@@ -0,0 +1,98 @@
+package com.example.onlyoffice.benchmark;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.service.FileStorageService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式保存文档（写入临时文件后原子替换），小文件和大文件，flat / sharded 目录布局，
+ * 启用去重时每次保存的内容相同（测量"保存未修改的文档"）
+ *
+ * 除每秒操作数外，bytes 计数给出每秒写入的字节数
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaveFromStreamBenchmark {
+
+    /**
+     * 文件大小: 64KB, 1MB, 16MB
+     */
+    @Param({"65536", "1048576", "16777216"})
+    public int size;
+
+    @Param({"FLAT", "SHARDED"})
+    public OnlyOfficeProperties.Layout layout;
+
+    @Param({"false", "true"})
+    public boolean dedup;
+
+    private Path uploadDir;
+    private FileStorageService fileStorageService;
+    private byte[] content;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSupport.quietLogging();
+        uploadDir = Files.createTempDirectory("jmh-save");
+        OnlyOfficeProperties properties = BenchmarkSupport.properties(uploadDir);
+        properties.getStorage().setLayout(layout);
+        properties.getStorage().setDedup(dedup);
+        fileStorageService = new FileStorageService(properties, BenchmarkSupport.metrics());
+        fileStorageService.init();
+
+        content = new byte[size];
+        ThreadLocalRandom.current().nextBytes(content);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fileStorageService.destroy();
+        BenchmarkSupport.deleteRecursively(uploadDir);
+    }
+
+    @Benchmark
+    public void saveFromStream(Bytes bytes) {
+        fileStorageService.saveFromStream(new ByteArrayInputStream(content), "benchmark", "docx", content.length);
+        bytes.bytes += content.length;
+    }
+
+    /**
+     * 写入字节数
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+}
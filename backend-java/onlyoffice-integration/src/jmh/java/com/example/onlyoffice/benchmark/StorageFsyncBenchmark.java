@@ -0,0 +1,103 @@
+package com.example.onlyoffice.benchmark;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.service.FileStorageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 自动保存集中到达：16 个线程并发保存各自的文档，对比刷盘策略
+ *
+ * Throughput 给出每秒保存数，SampleTime 给出单次保存（含刷盘）的延迟分布（p50/p99 等）。
+ * 结果取决于存储设备：在 tmpfs 上刷盘是空操作，应在与生产环境相同的文件系统上运行
+ * （通过 -Djava.io.tmpdir 指定临时目录位置）
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class StorageFsyncBenchmark {
+
+    @Param({"NONE", "ALWAYS", "DIRECTORY_GROUP"})
+    public OnlyOfficeProperties.StorageFsync fsync;
+
+    /**
+     * directory-group 模式的等待窗口（微秒）
+     */
+    @Param({"1000"})
+    public long groupWindow;
+
+    /**
+     * 文件大小
+     */
+    @Param({"65536"})
+    public int size;
+
+    private Path uploadDir;
+    private FileStorageService fileStorageService;
+    private byte[] content;
+    private final AtomicInteger nextDocument = new AtomicInteger();
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSupport.quietLogging();
+        uploadDir = Files.createTempDirectory("jmh-fsync");
+        OnlyOfficeProperties properties = BenchmarkSupport.properties(uploadDir);
+        properties.getStorage().setFsync(fsync);
+        properties.getStorage().setFsyncGroupWindow(groupWindow);
+        properties.getStorage().getIndex().setWatch(false);
+        fileStorageService = new FileStorageService(properties, BenchmarkSupport.metrics());
+        fileStorageService.init();
+
+        content = new byte[size];
+        ThreadLocalRandom.current().nextBytes(content);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fileStorageService.destroy();
+        BenchmarkSupport.deleteRecursively(uploadDir);
+    }
+
+    @Benchmark
+    public void save(Document document) {
+        fileStorageService.saveFromStream(new ByteArrayInputStream(content), document.id, "docx", content.length);
+    }
+
+    /**
+     * 每个线程保存自己的文档（不同文档之间没有锁竞争）
+     */
+    @State(Scope.Thread)
+    public static class Document {
+        public String id;
+
+        @Setup
+        public void setup(StorageFsyncBenchmark benchmark) {
+            id = "doc-" + benchmark.nextDocument.getAndIncrement();
+        }
+    }
+}
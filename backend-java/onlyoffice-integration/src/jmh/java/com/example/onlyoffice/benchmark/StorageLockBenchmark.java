@@ -0,0 +1,228 @@
+package com.example.onlyoffice.benchmark;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.exception.FileNotFoundException;
+import com.example.onlyoffice.service.DocumentIndex;
+import com.example.onlyoffice.service.FileStorageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 同一批文档上并发混合保存、删除和同名上传（压力测试）
+ *
+ * 每轮迭代结束时检查：没有残留的临时文件；索引与磁盘一致；同名上传分到了不同的文件名，
+ * 没有互相覆盖。不一致时抛出异常，该基准测试失败
+ *
+ * documents 越少同一文档上的竞争越激烈；crossProcess 为 true 时同时加文件锁
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageLockBenchmark {
+
+    /**
+     * 存储目录下的临时文件目录
+     */
+    private static final String TEMP_DIR = ".tmp";
+
+    /**
+     * 参与保存和删除的文档数
+     */
+    @Param({"1", "16"})
+    public int documents;
+
+    @Param({"false", "true"})
+    public boolean crossProcess;
+
+    private Path uploadDir;
+    private FileStorageService fileStorageService;
+    private byte[] content;
+
+    /**
+     * 本轮迭代上传得到的文档 ID 和上传次数
+     */
+    private final Set<String> uploadedIds = ConcurrentHashMap.newKeySet();
+    private final AtomicLong uploads = new AtomicLong();
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSupport.quietLogging();
+        uploadDir = Files.createTempDirectory("jmh-lock");
+        OnlyOfficeProperties properties = BenchmarkSupport.properties(uploadDir);
+        properties.getStorage().getIndex().setWatch(false);
+        properties.getStorage().getLocks().setCrossProcess(crossProcess);
+        fileStorageService = new FileStorageService(properties, BenchmarkSupport.metrics());
+        fileStorageService.init();
+
+        content = new byte[16 * 1024];
+        ThreadLocalRandom.current().nextBytes(content);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fileStorageService.destroy();
+        BenchmarkSupport.deleteRecursively(uploadDir);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public void save() {
+        fileStorageService.saveFromStream(new ByteArrayInputStream(content), randomDocument(), "docx",
+                content.length);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public void delete() {
+        try {
+            fileStorageService.deleteFile(randomDocument(), "docx");
+        } catch (FileNotFoundException e) {
+            // 已被删除
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public String upload() {
+        String documentId = fileStorageService.saveFile(new BytesMultipartFile("upload.docx", content));
+        uploadedIds.add(documentId);
+        uploads.incrementAndGet();
+        return documentId;
+    }
+
+    /**
+     * 检查一致性，删除本轮上传的文档
+     */
+    @TearDown(Level.Iteration)
+    public void verify() throws IOException {
+        List<String> errors = new ArrayList<>();
+
+        try (Stream<Path> paths = Files.list(uploadDir.resolve(TEMP_DIR))) {
+            List<Path> temps = paths.collect(Collectors.toList());
+            if (!temps.isEmpty()) {
+                errors.add("残留临时文件: " + temps);
+            }
+        }
+
+        for (int i = 0; i < documents; i++) {
+            String documentId = "doc-" + i;
+            DocumentIndex.Entry entry = fileStorageService.getDocument(documentId, "docx");
+            boolean onDisk = Files.exists(uploadDir.resolve(documentId + ".docx"));
+            if ((entry != null) != onDisk) {
+                errors.add("索引与磁盘不一致: " + documentId + ", 索引 " + (entry != null) + ", 磁盘 " + onDisk);
+            }
+        }
+
+        if (uploadedIds.size() != uploads.get()) {
+            errors.add("同名上传互相覆盖: 上传 " + uploads.get() + " 次, 文档 " + uploadedIds.size() + " 个");
+        }
+        for (String documentId : uploadedIds) {
+            if (!fileStorageService.fileExists(documentId, "docx")) {
+                errors.add("上传的文档不存在: " + documentId);
+            }
+            fileStorageService.deleteFile(documentId, "docx");
+        }
+        uploadedIds.clear();
+        uploads.set(0);
+
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException(String.join("\n", errors));
+        }
+    }
+
+    private String randomDocument() {
+        return "doc-" + ThreadLocalRandom.current().nextInt(documents);
+    }
+
+    /**
+     * 内存中的上传文件
+     */
+    private static class BytesMultipartFile implements MultipartFile {
+        private final String filename;
+        private final byte[] bytes;
+
+        BytesMultipartFile(String filename, byte[] bytes) {
+            this.filename = filename;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String getName() {
+            return "file";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return filename;
+        }
+
+        @Override
+        public String getContentType() {
+            return "application/octet-stream";
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return bytes.length == 0;
+        }
+
+        @Override
+        public long getSize() {
+            return bytes.length;
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            Files.write(dest.toPath(), bytes);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.onlyoffice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP 客户端配置类
+ *
+ * 提供访问 ONLYOFFICE 文档服务器的共享连接池客户端，
+ * 避免每次回调都重新建立 TCP 连接和 TLS 握手
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Slf4j
+@Configuration
+public class HttpClientConfig {
+
+    private final OnlyOfficeProperties properties;
+
+    public HttpClientConfig(OnlyOfficeProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 文档服务器连接池
+     *
+     * 随 Spring 容器关闭而关闭
+     */
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager documentServerConnectionManager() {
+        OnlyOfficeProperties.DocumentServer config = properties.getDocumentServer();
+
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(config.getConnectTimeout(), TimeUnit.MILLISECONDS)
+                .setSocketTimeout(config.getReadTimeout(), TimeUnit.MILLISECONDS)
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build();
+
+        log.info("文档服务器连接池初始化: maxConnections={}, maxConnectionsPerRoute={}",
+                config.getMaxConnections(), config.getMaxConnectionsPerRoute());
+
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(config.getMaxConnections())
+                .setMaxConnPerRoute(config.getMaxConnectionsPerRoute())
+                .setDefaultConnectionConfig(connectionConfig)
+                .build();
+    }
+
+    /**
+     * 文档服务器请求的默认配置
+     *
+     * 单独调整超时的请求以此为基础（{@link RequestConfig#copy}），保留连接保活等设置
+     */
+    @Bean
+    public RequestConfig documentServerRequestConfig() {
+        OnlyOfficeProperties.DocumentServer config = properties.getDocumentServer();
+        return RequestConfig.custom()
+                .setConnectionRequestTimeout(config.getConnectionRequestTimeout(), TimeUnit.MILLISECONDS)
+                .setResponseTimeout(config.getReadTimeout(), TimeUnit.MILLISECONDS)
+                .setDefaultKeepAlive(config.getKeepAlive(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 文档服务器 HTTP 客户端
+     *
+     * 后台线程定期回收过期和空闲连接，随 Spring 容器关闭而关闭
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient documentServerHttpClient(PoolingHttpClientConnectionManager connectionManager,
+                                                        RequestConfig documentServerRequestConfig) {
+        OnlyOfficeProperties.DocumentServer config = properties.getDocumentServer();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(documentServerRequestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(config.getIdleTimeout()))
+                .build();
+    }
+}
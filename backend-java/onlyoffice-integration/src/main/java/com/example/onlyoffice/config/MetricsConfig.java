@@ -0,0 +1,93 @@
+package com.example.onlyoffice.config;
+
+import com.example.onlyoffice.service.AdmissionControl;
+import com.example.onlyoffice.service.ChunkedUploadService;
+import com.example.onlyoffice.service.DocumentServerHealth;
+import com.example.onlyoffice.service.DocumentService;
+import com.example.onlyoffice.service.FileServingService;
+import com.example.onlyoffice.service.FileStorageService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 监控指标配置类
+ *
+ * 把各组件的状态（与 /api/health 中的统计相同）注册为 Gauge，抓取指标时读取
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * 回调保存队列、编辑器配置缓存、编辑会话、文档索引、文档下载接口、分块上传、准入控制、文档服务器熔断器和连接池的状态
+     */
+    @Bean
+    public MeterBinder onlyofficeGauges(DocumentService documentService,
+                                        FileStorageService fileStorageService,
+                                        FileServingService fileServingService,
+                                        ChunkedUploadService chunkedUploadService,
+                                        DocumentServerHealth documentServerHealth,
+                                        AdmissionControl admissionControl,
+                                        PoolingHttpClientConnectionManager connectionManager) {
+        return registry -> {
+            gauge(registry, "onlyoffice.save.queue.queued", "等待保存的回调", documentService::getSaveQueueStats, "queued");
+            gauge(registry, "onlyoffice.save.queue.active", "正在保存的工作线程", documentService::getSaveQueueStats, "active");
+            gauge(registry, "onlyoffice.save.dead.letters", "多次重试仍失败、保留在回调日志中的保存",
+                    documentService::getSaveQueueStats, "deadLetters");
+            gauge(registry, "onlyoffice.config.cache.size", "编辑器配置缓存条数", documentService::getConfigCacheStats, "size");
+            gauge(registry, "onlyoffice.documents.indexed", "文档索引条数", fileStorageService::getIndexStats, "size");
+            gauge(registry, "onlyoffice.file.serving.active", "正在进行的文档下载", fileServingService::getStats, "active");
+            gauge(registry, "onlyoffice.upload.sessions", "进行中的分块上传会话", chunkedUploadService::getStats, "sessions");
+            gauge(registry, "onlyoffice.edit.sessions", "编辑会话", documentService::getEditSessionStats, "editors");
+            gauge(registry, "onlyoffice.edit.sessions.pending", "已发放编辑配置、尚未连接的预留名额",
+                    documentService::getEditSessionStats, "pending");
+
+            for (AdmissionControl.EndpointClass endpoint : AdmissionControl.EndpointClass.values()) {
+                String bulkhead = endpoint.name().toLowerCase();
+                Gauge.builder("onlyoffice.bulkhead.active", admissionControl, a -> a.active(endpoint))
+                        .description("各类接口正在处理的请求数")
+                        .tag("bulkhead", bulkhead)
+                        .register(registry);
+                Gauge.builder("onlyoffice.bulkhead.saturation", admissionControl, a -> a.maxConcurrent(endpoint) > 0
+                                ? (double) a.active(endpoint) / a.maxConcurrent(endpoint) : 0)
+                        .description("各类接口并发数占上限的比例")
+                        .tag("bulkhead", bulkhead)
+                        .register(registry);
+            }
+
+            Gauge.builder("onlyoffice.document.server.circuit", documentServerHealth,
+                            DocumentServerHealth::stateValue)
+                    .description("文档服务器熔断器状态: 0 正常, 1 试探中, 2 熔断中")
+                    .register(registry);
+            Gauge.builder("onlyoffice.document.server.connections", connectionManager,
+                            manager -> manager.getTotalStats().getLeased())
+                    .description("使用中的文档服务器连接")
+                    .tag("state", "leased")
+                    .register(registry);
+            Gauge.builder("onlyoffice.document.server.connections", connectionManager,
+                            manager -> manager.getTotalStats().getPending())
+                    .description("等待中的文档服务器连接请求")
+                    .tag("state", "pending")
+                    .register(registry);
+        };
+    }
+
+    private static void gauge(MeterRegistry registry, String name, String description,
+                              Supplier<? extends Map<String, ? extends Number>> stats, String key) {
+        Gauge.builder(name, () -> {
+                    Number value = stats.get().get(key);
+                    return value != null ? value : 0;
+                })
+                .description(description)
+                .register(registry);
+    }
+}
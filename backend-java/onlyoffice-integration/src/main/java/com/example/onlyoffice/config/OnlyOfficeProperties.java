@@ -1,6 +1,8 @@
 package com.example.onlyoffice.config;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
@@ -42,6 +44,41 @@ public class OnlyOfficeProperties {
      */
     private Storage storage = new Storage();
 
+    /**
+     * 回调保存配置
+     */
+    private Callback callback = new Callback();
+
+    /**
+     * 编辑器配置缓存
+     */
+    private ConfigCache configCache = new ConfigCache();
+
+    /**
+     * 文档下载接口配置
+     */
+    private FileServing fileServing = new FileServing();
+
+    /**
+     * 分块上传配置
+     */
+    private ChunkedUpload chunkedUpload = new ChunkedUpload();
+
+    /**
+     * 准入控制配置（各类接口的并发隔离和单用户速率限制）
+     */
+    private Admission admission = new Admission();
+
+    /**
+     * 编辑会话配置（同时编辑人数上限）
+     */
+    private EditSessions editSessions = new EditSessions();
+
+    /**
+     * 版本历史配置
+     */
+    private History history = new History();
+
     /**
      * 文档服务器配置
      */
@@ -58,6 +95,128 @@ public class OnlyOfficeProperties {
          * ONLYOFFICE 内部访问地址（可选，用于后端直接访问）
          */
         private String internalUrl;
+
+        /**
+         * 内部地址的检查间隔（秒）：不可用时等待恢复，可用时发现失效，0 表示只在启动时检查
+         */
+        private int internalUrlCheckInterval = 60;
+
+        /**
+         * 连接池最大连接数
+         */
+        private int maxConnections = 50;
+
+        /**
+         * 每个路由（目标主机）的最大连接数
+         */
+        private int maxConnectionsPerRoute = 20;
+
+        /**
+         * 建立连接超时时间（毫秒）
+         */
+        private int connectTimeout = 5000;
+
+        /**
+         * 读取超时时间（毫秒）
+         */
+        private int readTimeout = 60000;
+
+        /**
+         * 从连接池获取连接的超时时间（毫秒）
+         */
+        private int connectionRequestTimeout = 5000;
+
+        /**
+         * 服务端未声明 Keep-Alive 时连接的默认保活时间（秒）
+         */
+        private int keepAlive = 30;
+
+        /**
+         * 空闲连接回收时间（秒），超过此时间未使用的连接将被关闭
+         */
+        private int idleTimeout = 60;
+
+        /**
+         * 回调文档下载配置
+         */
+        private Download download = new Download();
+
+        /**
+         * 健康探测和熔断配置
+         */
+        private Health health = new Health();
+    }
+
+    /**
+     * 文档服务器健康探测和熔断配置
+     */
+    @Data
+    public static class Health {
+        /**
+         * 探测间隔（秒），0 表示不探测（熔断只根据下载结果）
+         */
+        private int probeInterval = 10;
+
+        /**
+         * 探测超时时间（毫秒）
+         */
+        private int probeTimeout = 2000;
+
+        /**
+         * 延迟统计保留的最近探测次数
+         */
+        private int probeWindow = 60;
+
+        /**
+         * 探测耗时超过此值（毫秒）视为失败
+         */
+        private int slowThreshold = 1000;
+
+        /**
+         * 连续失败（下载或探测）达到此次数时熔断
+         */
+        private int failureThreshold = 5;
+
+        /**
+         * 熔断持续时间（秒），之后放行一次试探下载，或探测成功时恢复
+         */
+        private int openDuration = 30;
+    }
+
+    /**
+     * 回调文档下载配置
+     */
+    @Data
+    public static class Download {
+        /**
+         * 下载中断后的最大重试（续传）次数
+         */
+        private int maxRetries = 3;
+
+        /**
+         * 重试间隔基数（毫秒），第 n 次重试等待 n 倍
+         */
+        private int retryBackoff = 1000;
+
+        /**
+         * 文件大小达到此值（字节）时拆分为多个区段并行下载
+         */
+        private long parallelThreshold = 16777216L; // 16MB
+
+        /**
+         * 并行下载的区段数
+         */
+        private int segments = 4;
+
+        /**
+         * 并行下载线程数（所有下载共享）
+         */
+        private int threads = 8;
+
+        /**
+         * 自适应读取超时的下限（毫秒），上限为 readTimeout
+         */
+        private int minReadTimeout = 5000;
     }
 
     /**
@@ -121,5 +280,399 @@ public class OnlyOfficeProperties {
          * 最大文件大小（字节）
          */
         private long maxSize = 104857600L; // 100MB
+
+        /**
+         * 目录布局: flat 所有文件放在存储目录下，sharded 按文档 ID 哈希分两级子目录
+         */
+        private Layout layout = Layout.FLAT;
+
+        /**
+         * sharded 布局下启动时是否在后台将存储目录根下的旧文件迁移到分片目录
+         */
+        private boolean migrateOnStartup = true;
+
+        /**
+         * 是否启用内容寻址存储（按 SHA-256 去重，文档为指向内容文件的硬链接）
+         */
+        private boolean dedup = false;
+
+        /**
+         * 文档元数据索引配置
+         */
+        private Index index = new Index();
+
+        /**
+         * 文档修改锁配置
+         */
+        private Locks locks = new Locks();
+
+        /**
+         * 保存文档时的刷盘策略
+         */
+        private StorageFsync fsync = StorageFsync.DIRECTORY_GROUP;
+
+        /**
+         * 目录合并刷盘的等待窗口（微秒），仅 fsync=directory-group 时有效：第一个保存到达后再等待此时间收集同一批次，0 表示不等待
+         */
+        private long fsyncGroupWindow = 1000;
+    }
+
+    /**
+     * 文档修改锁配置
+     */
+    @Data
+    public static class Locks {
+        /**
+         * 锁分段数（向上取 2 的幂）：同一文档的保存、上传和删除互斥，不同文档落在不同分段时并行
+         */
+        private int stripes = 256;
+
+        /**
+         * 是否同时加文件锁（FileChannel.lock），多个后端节点共享同一存储卷时开启，各节点的 stripes 必须相同
+         */
+        private boolean crossProcess = false;
+
+        /**
+         * 等待锁的最长时间（毫秒），超时返回 503
+         */
+        private long timeout = 30000;
+    }
+
+    /**
+     * 文档元数据索引配置
+     */
+    @Data
+    public static class Index {
+        /**
+         * 是否监听存储目录，将外部修改同步到索引
+         */
+        private boolean watch = true;
+
+        /**
+         * 不存在的文件的缓存时间（秒），期间查询不再访问磁盘
+         */
+        private int negativeCacheTtl = 30;
+
+        /**
+         * 不存在的文件的最大缓存条数
+         */
+        private int negativeCacheSize = 10000;
+    }
+
+    /**
+     * 回调保存配置
+     */
+    @Data
+    public static class Callback {
+        /**
+         * 是否异步保存（回调写入日志后立即应答，由后台线程下载保存）
+         */
+        private boolean asyncSave = true;
+
+        /**
+         * 回调日志目录（用于重启后恢复未完成的保存）
+         */
+        private String journalDir = "./data/journal";
+
+        /**
+         * 回调日志刷盘策略
+         */
+        private JournalFsync journalFsync = JournalFsync.ALWAYS;
+
+        /**
+         * 定时刷盘间隔（毫秒），仅 journalFsync=interval 时有效
+         */
+        private int fsyncInterval = 1000;
+
+        /**
+         * 保存队列容量，超过时仍然入队并告警（已写入日志的回调不在回调线程中同步保存）
+         */
+        private int queueCapacity = 1000;
+
+        /**
+         * 保存工作线程数
+         */
+        private int workers = 4;
+
+        /**
+         * 单次保存最大尝试次数
+         */
+        private int maxAttempts = 3;
+
+        /**
+         * 保存失败重试间隔（毫秒）
+         */
+        private int retryDelay = 2000;
+    }
+
+    /**
+     * 编辑器配置缓存
+     */
+    @Data
+    public static class ConfigCache {
+        /**
+         * 是否缓存已签名的编辑器配置
+         */
+        private boolean enabled = true;
+
+        /**
+         * 最大缓存条数，超出时淘汰最久未使用的配置
+         */
+        private int maxEntries = 1000;
+
+        /**
+         * 缓存有效期（秒），不超过 JWT 过期时间的一半，保证返回的 Token 还有足够的有效期
+         */
+        private int ttl = 1800;
+    }
+
+    /**
+     * 文档下载接口配置（/api/files/{id}）
+     */
+    @Data
+    public static class FileServing {
+        /**
+         * 最大并发下载数，超出时返回 503
+         */
+        private int maxConcurrent = 64;
+
+        /**
+         * 等待下载许可的最长时间（毫秒）
+         */
+        private long acquireTimeout = 100;
+
+        /**
+         * 返回 503 时 Retry-After 响应头的值（秒）
+         */
+        private int retryAfter = 1;
+    }
+
+    /**
+     * 分块上传配置（/api/docs/uploads）
+     */
+    @Data
+    public static class ChunkedUpload {
+        /**
+         * 分块大小（字节），最后一块可以更小
+         */
+        private int chunkSize = 8388608; // 8MB
+
+        /**
+         * 最大同时进行的上传会话数，超出时返回 503
+         */
+        private int maxSessions = 100;
+
+        /**
+         * 会话空闲超过此时间（秒）未收到分块时视为放弃，删除已上传的内容
+         */
+        private int sessionTtl = 3600;
+
+        /**
+         * 清理放弃的会话的间隔（秒）
+         */
+        private int cleanupInterval = 60;
+
+        /**
+         * 会话数达到上限时 Retry-After 响应头的值（秒）
+         */
+        private int retryAfter = 5;
+    }
+
+    /**
+     * 编辑会话配置
+     */
+    @Data
+    public static class EditSessions {
+        /**
+         * 同时编辑的连接数上限（文档服务器许可和硬件容量），0 表示不限制
+         */
+        private int maxEditors = 0;
+
+        /**
+         * 达到上限时的处理方式
+         */
+        private EditOverflow overflow = EditOverflow.VIEW;
+
+        /**
+         * overflow 为 queue 时返回 503 的 Retry-After（秒）
+         */
+        private int queueRetryAfter = 5;
+
+        /**
+         * 已发放编辑配置、尚未收到连接回调的预留名额的有效期（秒）
+         */
+        private int reservationTtl = 120;
+
+        /**
+         * 文档超过此时间（秒）没有任何回调时视为会话已结束（防止丢失关闭回调后名额无法释放）
+         */
+        private int sessionTimeout = 86400;
+
+        /**
+         * 清理过期预留和会话的间隔（秒）
+         */
+        private int cleanupInterval = 30;
+    }
+
+    /**
+     * 版本历史配置
+     */
+    @Data
+    public static class History {
+        /**
+         * 是否保留历史版本（每次最终保存 status 2 生成一个版本），默认关闭：
+         * 每个版本是一份完整副本，开启前按 maxVersions 估算磁盘占用
+         */
+        private boolean enabled = false;
+
+        /**
+         * 历史版本目录（存储目录中只保留当前版本）
+         */
+        private String dir = "./data/history";
+
+        /**
+         * 每个文档最多保留的版本数（含当前版本），0 表示不限制
+         */
+        private int maxVersions = 50;
+
+        /**
+         * 历史版本最长保留天数（当前版本始终保留），0 表示不限制
+         */
+        private int maxAge = 0;
+
+        /**
+         * 内存中缓存的文档版本清单数
+         */
+        private int manifestCacheSize = 10000;
+    }
+
+    /**
+     * 编辑人数达到上限时的处理方式
+     */
+    public enum EditOverflow {
+        /**
+         * 以只读方式打开
+         */
+        VIEW,
+
+        /**
+         * 返回 503 和 Retry-After，客户端稍后重试（或自行以只读方式打开）
+         */
+        QUEUE
+    }
+
+    /**
+     * 保存文档时的刷盘策略
+     */
+    public enum StorageFsync {
+        /**
+         * 不主动刷盘，由操作系统决定（断电可能丢失已应答的保存）
+         */
+        NONE,
+
+        /**
+         * 每次保存后刷盘：替换前刷新临时文件内容，替换后刷新所在目录
+         */
+        ALWAYS,
+
+        /**
+         * 只合并目录刷盘：同一窗口内到达的保存共享一次目录刷盘；
+         * 临时文件内容仍由各保存线程分别刷盘（每个文件一次，并发的刷盘由文件系统日志合并提交）
+         */
+        DIRECTORY_GROUP
+    }
+
+    /**
+     * 存储目录布局
+     */
+    public enum Layout {
+        /**
+         * 所有文件直接放在存储目录下
+         */
+        FLAT,
+
+        /**
+         * 按文档 ID 的哈希放在两级子目录下（uploads/3f/a2/report.docx）
+         */
+        SHARDED
+    }
+
+    /**
+     * 回调日志刷盘策略
+     */
+    public enum JournalFsync {
+        /**
+         * 应答前保证记录已刷盘；并发写入的记录合并刷盘（一次刷盘覆盖此前写入的所有记录）
+         */
+        ALWAYS,
+
+        /**
+         * 后台定时刷盘
+         */
+        INTERVAL,
+
+        /**
+         * 不主动刷盘，由操作系统决定
+         */
+        NONE
+    }
+
+    /**
+     * 准入控制配置
+     */
+    @Data
+    public static class Admission {
+        /**
+         * 获取编辑器配置
+         */
+        private EndpointLimit config = new EndpointLimit(64, 100, 10, 20);
+
+        /**
+         * 上传（multipart、流式、分块）
+         */
+        private EndpointLimit upload = new EndpointLimit(16, 0, 1, 5);
+
+        /**
+         * ONLYOFFICE 回调（不限制单用户速率）
+         */
+        private EndpointLimit callback = new EndpointLimit(64, 1000, 0, 0);
+
+        /**
+         * 并发数达到上限时 503 响应的 Retry-After（秒）
+         */
+        private int retryAfter = 1;
+
+        /**
+         * 速率限制最多跟踪的用户数，超出时清理空闲用户
+         */
+        private int maxTrackedUsers = 10000;
+    }
+
+    /**
+     * 单类接口的准入限制
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EndpointLimit {
+        /**
+         * 最大并发请求数（0 表示不限制）
+         */
+        private int maxConcurrent;
+
+        /**
+         * 等待并发许可的最长时间（毫秒），超时返回 503
+         */
+        private long acquireTimeout;
+
+        /**
+         * 单个用户每秒请求数（令牌桶补充速率，0 表示不限制），超出返回 429
+         */
+        private double rate;
+
+        /**
+         * 单个用户允许的突发请求数（令牌桶容量）
+         */
+        private int burst;
     }
 }
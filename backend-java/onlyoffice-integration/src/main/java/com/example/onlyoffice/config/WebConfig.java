@@ -1,12 +1,20 @@
 package com.example.onlyoffice.config;
 
+import com.example.onlyoffice.service.DocumentIndex;
+import com.example.onlyoffice.service.FileStorageService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.AbstractResourceResolver;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
 
+import javax.servlet.http.HttpServletRequest;
 import java.nio.file.Paths;
+import java.util.List;
 
 /**
  * Web 配置类
@@ -20,6 +28,7 @@ import java.nio.file.Paths;
 public class WebConfig implements WebMvcConfigurer {
 
     private final OnlyOfficeProperties properties;
+    private final FileStorageService fileStorageService;
 
     @Value("${cors.allowed-origins:*}")
     private String allowedOrigins;
@@ -33,8 +42,9 @@ public class WebConfig implements WebMvcConfigurer {
     @Value("${cors.allow-credentials:true}")
     private boolean allowCredentials;
 
-    public WebConfig(OnlyOfficeProperties properties) {
+    public WebConfig(OnlyOfficeProperties properties, FileStorageService fileStorageService) {
         this.properties = properties;
+        this.fileStorageService = fileStorageService;
     }
 
     /**
@@ -48,6 +58,7 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedOriginPatterns(allowedOrigins.split(","))
                 .allowedMethods(allowedMethods.split(","))
                 .allowedHeaders(allowedHeaders.split(","))
+                .exposedHeaders("X-Next-Cursor", "ETag", "Content-Range")
                 .allowCredentials(allowCredentials)
                 .maxAge(3600);
     }
@@ -57,6 +68,8 @@ public class WebConfig implements WebMvcConfigurer {
      * 
      * 将 /uploads/** 映射到文件存储目录
      * ONLYOFFICE 通过此路径下载文档
+     * 
+     * 文件位置由文档索引确定（sharded 布局下位于哈希子目录），URL 保持 /uploads/{文件名} 不变
      */
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
@@ -74,6 +87,36 @@ public class WebConfig implements WebMvcConfigurer {
         // 映射 /uploads/** 到文件存储目录
         registry.addResourceHandler("/uploads/**")
                 .addResourceLocations("file:" + uploadPath)
-                .setCachePeriod(0); // 禁用缓存，确保获取最新文件
+                .setCachePeriod(0) // 禁用缓存，确保获取最新文件
+                .resourceChain(false)
+                .addResolver(new DocumentResourceResolver());
+    }
+
+    /**
+     * 通过文档索引查找 /uploads/{文件名} 对应的文件
+     */
+    private class DocumentResourceResolver extends AbstractResourceResolver {
+
+        @Override
+        protected Resource resolveResourceInternal(HttpServletRequest request, String requestPath,
+                                                   List<? extends Resource> locations, ResourceResolverChain chain) {
+            // 只有一级文件名（临时文件不在索引中）
+            if (requestPath.contains("/")) {
+                return null;
+            }
+            int dotIndex = requestPath.lastIndexOf('.');
+            if (dotIndex <= 0) {
+                return null;
+            }
+            DocumentIndex.Entry document = fileStorageService.getDocument(
+                    requestPath.substring(0, dotIndex), requestPath.substring(dotIndex + 1));
+            return document != null ? new FileSystemResource(document.getPath()) : null;
+        }
+
+        @Override
+        protected String resolveUrlPathInternal(String resourceUrlPath, List<? extends Resource> locations,
+                                                ResourceResolverChain chain) {
+            return resourceUrlPath;
+        }
     }
 }
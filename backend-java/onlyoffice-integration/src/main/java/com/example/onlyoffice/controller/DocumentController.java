@@ -3,17 +3,46 @@ package com.example.onlyoffice.controller;
 import com.example.onlyoffice.dto.CallbackDTO;
 import com.example.onlyoffice.dto.CallbackResponseDTO;
 import com.example.onlyoffice.dto.DocumentConfigDTO;
+import com.example.onlyoffice.exception.DocumentException;
+import com.example.onlyoffice.service.AdmissionControl;
+import com.example.onlyoffice.service.ChunkedUploadService;
+import com.example.onlyoffice.service.DocumentConfigCache;
+import com.example.onlyoffice.service.DocumentIndex;
 import com.example.onlyoffice.service.DocumentService;
+import com.example.onlyoffice.service.FileServingService;
 import com.example.onlyoffice.service.FileStorageService;
+import com.example.onlyoffice.service.ServiceMetrics;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.security.Principal;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 文档控制器
@@ -28,13 +57,38 @@ import java.util.stream.Collectors;
 @RequestMapping("/api")
 public class DocumentController {
 
+    /**
+     * 分页列表的最大每页条数
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * 下一页游标响应头
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final DocumentService documentService;
     private final FileStorageService fileStorageService;
+    private final FileServingService fileServingService;
+    private final ChunkedUploadService chunkedUploadService;
+    private final AdmissionControl admissionControl;
+    private final ServiceMetrics metrics;
+    private final ObjectMapper objectMapper;
 
     public DocumentController(DocumentService documentService, 
-                             FileStorageService fileStorageService) {
+                             FileStorageService fileStorageService,
+                             FileServingService fileServingService,
+                             ChunkedUploadService chunkedUploadService,
+                             AdmissionControl admissionControl,
+                             ServiceMetrics metrics,
+                             ObjectMapper objectMapper) {
         this.documentService = documentService;
         this.fileStorageService = fileStorageService;
+        this.fileServingService = fileServingService;
+        this.chunkedUploadService = chunkedUploadService;
+        this.admissionControl = admissionControl;
+        this.metrics = metrics;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -47,7 +101,8 @@ public class DocumentController {
      * @param userId 用户 ID（可选）
      * @param userName 用户名称（可选）
      * @param mode 编辑模式: edit（编辑）, view（只读），默认 edit
-     * @return 编辑器配置
+     * @return 编辑器配置（带 ETag / Last-Modified，支持条件请求）；并发数超过上限或编辑人数已满（overflow 为 queue）时返回 503，
+     *         单个客户端（已认证时按用户，否则按客户端地址）请求过于频繁时返回 429
      * 
      * @apiNote 示例请求: GET /api/doc/test?fileType=docx&userId=user1&userName=张三&mode=edit
      */
@@ -57,14 +112,52 @@ public class DocumentController {
             @RequestParam(defaultValue = "docx") String fileType,
             @RequestParam(required = false) String userId,
             @RequestParam(required = false) String userName,
-            @RequestParam(defaultValue = "edit") String mode) {
+            @RequestParam(defaultValue = "edit") String mode,
+            WebRequest webRequest,
+            HttpServletRequest request) {
         
         log.info("获取文档配置: id={}, fileType={}, userId={}, mode={}", id, fileType, userId, mode);
         
-        DocumentConfigDTO config = documentService.getDocumentConfig(
-                id, fileType, userId, userName, mode);
+        try (AdmissionControl.Permit permit = admissionControl.enter(
+                AdmissionControl.EndpointClass.CONFIG, clientKey(request))) {
+            DocumentConfigCache.Entry entry = documentService.getCachedDocumentConfig(
+                    id, fileType, userId, userName, mode);
+            
+            // 配置未变化时返回 304，浏览器使用本地副本
+            if (webRequest.checkNotModified(entry.getEtag(), entry.getLastModified())) {
+                return null;
+            }
+            
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .eTag(entry.getEtag())
+                    .lastModified(entry.getLastModified())
+                    .body(entry.getConfig());
+        }
+    }
+
+    /**
+     * 下载文档内容
+     * 
+     * ONLYOFFICE 通过此接口获取文档（配置中的 document.url）。支持 ETag / Last-Modified 条件请求
+     * （文档未修改时返回 304）和单个字节范围（206），并发数超过上限时返回 503
+     * 
+     * @param id 文档 ID（不含扩展名）
+     * @param fileType 文件类型，默认 docx
+     * 
+     * @apiNote 示例请求: GET /api/files/test?fileType=docx
+     *          Range: bytes=0-1023
+     */
+    @GetMapping("/files/{id}")
+    public void downloadFile(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "docx") String fileType,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        
+        log.debug("下载文档: id={}, fileType={}, range={}", id, fileType, request.getHeader(HttpHeaders.RANGE));
         
-        return ResponseEntity.ok(config);
+        fileServingService.send(id, fileType, request, response);
     }
 
     /**
@@ -73,7 +166,7 @@ public class DocumentController {
      * 当文档状态变化时（如保存、关闭），ONLYOFFICE 会调用此接口
      * 
      * @param callback 回调数据
-     * @return 处理结果
+     * @return 处理结果；并发数超过上限时返回 503（ONLYOFFICE 稍后重新回调）
      * 
      * @apiNote 此接口由 ONLYOFFICE 自动调用，无需手动调用
      */
@@ -81,43 +174,78 @@ public class DocumentController {
     public ResponseEntity<CallbackResponseDTO> handleCallback(@RequestBody CallbackDTO callback) {
         log.info("收到 ONLYOFFICE 回调: status={}, key={}", callback.getStatus(), callback.getKey());
         
-        try {
-            documentService.handleCallback(callback);
-            return ResponseEntity.ok(CallbackResponseDTO.success());
-        } catch (Exception e) {
-            log.error("处理回调失败: {}", e.getMessage());
-            return ResponseEntity.ok(CallbackResponseDTO.error(e.getMessage()));
+        try (AdmissionControl.Permit permit = admissionControl.enter(AdmissionControl.EndpointClass.CALLBACK, null)) {
+            try {
+                documentService.handleCallback(callback);
+                return ResponseEntity.ok(CallbackResponseDTO.success());
+            } catch (Exception e) {
+                log.error("处理回调失败: {}", e.getMessage());
+                return ResponseEntity.ok(CallbackResponseDTO.error(e.getMessage()));
+            }
         }
     }
 
     /**
      * 获取文档列表
      * 
+     * 支持排序、按类型过滤和游标分页；指定 limit 时下一页游标在响应头 X-Next-Cursor 中返回，
+     * 没有更多数据时不返回该响应头。不指定 limit 时以流的方式返回全部文档
+     * 
+     * @param limit 每页条数（1 ~ 1000，可选）
+     * @param cursor 分页游标（上一页响应头 X-Next-Cursor 的值，可选）
+     * @param sort 排序字段: name（默认）, mtime, size
+     * @param order 排序方向: asc（默认）, desc
+     * @param type 只列出这些类型，逗号分隔（可选），如 docx,xlsx
      * @return 文档列表
      * 
-     * @apiNote 示例响应:
+     * @apiNote 示例请求: GET /api/docs?limit=50&sort=mtime&order=desc&type=docx
+     *          示例响应:
      * [
-     *   { "id": "test", "name": "test.docx" },
-     *   { "id": "report", "name": "report.xlsx" }
+     *   { "id": "test", "name": "test.docx", "fileType": "docx", "size": 12345, "lastModified": 1704067200000 },
+     *   { "id": "report", "name": "report.xlsx", "fileType": "xlsx", "size": 6789, "lastModified": 1704067100000 }
      * ]
      */
     @GetMapping("/docs")
-    public ResponseEntity<List<Map<String, String>>> listDocuments() {
-        log.info("获取文档列表");
+    public ResponseEntity<StreamingResponseBody> listDocuments(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "name") String sort,
+            @RequestParam(defaultValue = "asc") String order,
+            @RequestParam(required = false) String type) {
+        log.info("获取文档列表: limit={}, sort={}, order={}, type={}", limit, sort, order, type);
+        long start = System.nanoTime();
         
-        List<String> documents = fileStorageService.listDocuments();
+        DocumentIndex.SortField sortField = parseSortField(sort);
+        boolean descending = "desc".equalsIgnoreCase(order);
+        Set<String> types = type == null ? null : Arrays.stream(type.split(","))
+                .map(String::trim)
+                .map(String::toLowerCase)
+                .filter(t -> !t.isEmpty())
+                .collect(Collectors.toSet());
         
-        List<Map<String, String>> result = documents.stream()
-                .map(id -> {
-                    Map<String, String> doc = new HashMap<>();
-                    doc.put("id", id);
-                    // 这里简化处理，实际可能需要查询文件类型
-                    doc.put("name", id + ".docx");
-                    return doc;
-                })
-                .collect(Collectors.toList());
+        Stream<DocumentIndex.Entry> documents = fileStorageService.listDocuments(sortField, descending, types, cursor);
         
-        return ResponseEntity.ok(result);
+        // 不分页：直接流式输出，不在内存中构建完整列表
+        if (limit == null) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(out -> writeDocuments(out, documents, start));
+        }
+        
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            documents.close();
+            throw new DocumentException("limit 必须在 1 ~ " + MAX_PAGE_SIZE + " 之间");
+        }
+        
+        // 多取一条判断是否还有下一页
+        List<DocumentIndex.Entry> page = documents.limit(limit + 1L).collect(Collectors.toList());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+        if (page.size() > limit) {
+            page = page.subList(0, limit);
+            response.header(NEXT_CURSOR_HEADER, fileStorageService.nextCursor(page.get(limit - 1), sortField));
+        }
+        List<DocumentIndex.Entry> result = page;
+        return response.body(out -> writeDocuments(out, result.stream(), start));
     }
 
     /**
@@ -131,10 +259,16 @@ public class DocumentController {
      *          file: (binary)
      */
     @PostMapping("/docs/upload")
-    public ResponseEntity<Map<String, Object>> uploadDocument(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<Map<String, Object>> uploadDocument(
+            @RequestParam("file") MultipartFile file,
+            HttpServletRequest request) {
         log.info("上传文档: {}", file.getOriginalFilename());
         
-        String documentId = fileStorageService.saveFile(file);
+        String documentId;
+        try (AdmissionControl.Permit permit = admissionControl.enter(
+                AdmissionControl.EndpointClass.UPLOAD, clientKey(request))) {
+            documentId = fileStorageService.saveFile(file);
+        }
         
         Map<String, Object> result = new HashMap<>();
         result.put("success", true);
@@ -144,6 +278,162 @@ public class DocumentController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * 上传文档内容（流式，适合大文件）
+     * 
+     * 请求体即文件内容，直接写入存储目录旁的临时文件后原子替换，不经过 multipart 临时文件；
+     * 写入时检查大小限制并计算 SHA-256。同 ID 同类型的文档会被覆盖
+     * 
+     * @param id 文档 ID（不含扩展名）
+     * @param fileType 文件类型，默认 docx
+     * @return 上传结果（含文件大小和 SHA-256）
+     * 
+     * @apiNote 示例请求: PUT /api/docs/report?fileType=docx
+     *          Content-Type: application/octet-stream
+     *          (binary)
+     */
+    @PutMapping("/docs/{id}")
+    public ResponseEntity<Map<String, Object>> putDocument(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "docx") String fileType,
+            HttpServletRequest request) throws IOException {
+        
+        log.info("上传文档: id={}, fileType={}, size={}", id, fileType, request.getContentLengthLong());
+        
+        FileStorageService.SavedFile saved;
+        try (AdmissionControl.Permit permit = admissionControl.enter(
+                AdmissionControl.EndpointClass.UPLOAD, clientKey(request))) {
+            saved = fileStorageService.saveUpload(
+                    request.getInputStream(), id, fileType, request.getContentLengthLong());
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("documentId", id);
+        result.put("size", saved.getSize());
+        result.put("sha256", saved.getSha256());
+        result.put("message", "上传成功");
+        
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 创建分块上传会话
+     * 
+     * 大文件拆分为固定大小的分块上传，分块可以并行、以任意顺序上传，中断后只需重传未完成的分块
+     * 
+     * @param documentId 文档 ID（不含扩展名）
+     * @param fileType 文件类型，默认 docx
+     * @param size 文件总大小（字节）
+     * @param sha256 文件内容的 SHA-256（十六进制，可选，提交时校验）
+     * @return 会话信息（uploadId、chunkSize、chunkCount）
+     * 
+     * @apiNote 示例请求: POST /api/docs/uploads?documentId=report&fileType=pptx&size=104857600
+     */
+    @PostMapping("/docs/uploads")
+    public ResponseEntity<Map<String, Object>> createUpload(
+            @RequestParam String documentId,
+            @RequestParam(defaultValue = "docx") String fileType,
+            @RequestParam long size,
+            @RequestParam(required = false) String sha256,
+            HttpServletRequest request) {
+        
+        log.info("创建上传会话: documentId={}, fileType={}, size={}", documentId, fileType, size);
+        
+        try (AdmissionControl.Permit permit = admissionControl.enter(
+                AdmissionControl.EndpointClass.UPLOAD, clientKey(request))) {
+            ChunkedUploadService.Session session = chunkedUploadService.create(documentId, fileType, size, sha256);
+            return ResponseEntity.ok(uploadStatus(session));
+        }
+    }
+
+    /**
+     * 上传分块
+     * 
+     * 请求体即分块内容，除最后一块外大小必须等于 chunkSize；同一分块可以重复上传
+     * 
+     * @param uploadId 上传 ID
+     * @param index 分块序号（从 0 开始）
+     * @return 上传结果
+     * 
+     * @apiNote 示例请求: PUT /api/docs/uploads/{uploadId}/chunks/0
+     *          Content-Type: application/octet-stream
+     *          (binary)
+     */
+    @PutMapping("/docs/uploads/{uploadId}/chunks/{index}")
+    public ResponseEntity<Map<String, Object>> uploadChunk(
+            @PathVariable String uploadId,
+            @PathVariable int index,
+            HttpServletRequest request) throws IOException {
+        
+        try (AdmissionControl.Permit permit = admissionControl.enter(AdmissionControl.EndpointClass.UPLOAD, null)) {
+            chunkedUploadService.writeChunk(uploadId, index, request.getInputStream(), request.getContentLengthLong());
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("index", index);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 查询分块上传进度
+     * 
+     * @param uploadId 上传 ID
+     * @return 会话信息（含已收到的分块序号 received）
+     */
+    @GetMapping("/docs/uploads/{uploadId}")
+    public ResponseEntity<Map<String, Object>> getUpload(@PathVariable String uploadId) {
+        return ResponseEntity.ok(uploadStatus(chunkedUploadService.get(uploadId)));
+    }
+
+    /**
+     * 提交分块上传
+     * 
+     * 检查所有分块已收到、总大小和 SHA-256 后原子替换目标文档
+     * 
+     * @param uploadId 上传 ID
+     * @param sha256 文件内容的 SHA-256（可选，覆盖创建会话时提供的值）
+     * @return 上传结果（含文件大小和 SHA-256）
+     */
+    @PostMapping("/docs/uploads/{uploadId}/commit")
+    public ResponseEntity<Map<String, Object>> commitUpload(
+            @PathVariable String uploadId,
+            @RequestParam(required = false) String sha256) {
+        
+        log.info("提交上传: uploadId={}", uploadId);
+        
+        ChunkedUploadService.Session session = chunkedUploadService.get(uploadId);
+        FileStorageService.SavedFile saved;
+        try (AdmissionControl.Permit permit = admissionControl.enter(AdmissionControl.EndpointClass.UPLOAD, null)) {
+            saved = chunkedUploadService.commit(uploadId, sha256);
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("documentId", session.getDocumentId());
+        result.put("size", saved.getSize());
+        result.put("sha256", saved.getSha256());
+        result.put("message", "上传成功");
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 取消分块上传
+     * 
+     * @param uploadId 上传 ID
+     * @return 取消结果
+     */
+    @DeleteMapping("/docs/uploads/{uploadId}")
+    public ResponseEntity<Map<String, Object>> abortUpload(@PathVariable String uploadId) {
+        chunkedUploadService.abort(uploadId);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("message", "已取消");
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * 删除文档
      * 
@@ -158,7 +448,7 @@ public class DocumentController {
         
         log.info("删除文档: id={}, fileType={}", id, fileType);
         
-        fileStorageService.deleteFile(id, fileType);
+        documentService.deleteDocument(id, fileType);
         
         Map<String, Object> result = new HashMap<>();
         result.put("success", true);
@@ -167,6 +457,103 @@ public class DocumentController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * 获取文档的版本历史
+     * 
+     * 前端在编辑器的 onRequestHistory 事件中调用，结果传给 docEditor.refreshHistory
+     * 
+     * @param id 文档 ID
+     * @param fileType 文件类型
+     * @return currentVersion 和 history
+     * 
+     * @apiNote 示例请求: GET /api/docs/test/history?fileType=docx
+     */
+    @GetMapping("/docs/{id}/history")
+    public ResponseEntity<Map<String, Object>> getHistory(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "docx") String fileType) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(documentService.getHistory(id, fileType));
+    }
+
+    /**
+     * 获取版本的下载地址
+     * 
+     * 前端在编辑器的 onRequestHistoryData 事件中调用，结果传给 docEditor.setHistoryData
+     * 
+     * @param id 文档 ID
+     * @param version 版本号
+     * @param fileType 文件类型
+     * @return version, key, url, changesUrl, previous, token
+     * 
+     * @apiNote 示例请求: GET /api/docs/test/history/3?fileType=docx
+     */
+    @GetMapping("/docs/{id}/history/{version}")
+    public ResponseEntity<Map<String, Object>> getHistoryData(
+            @PathVariable String id,
+            @PathVariable int version,
+            @RequestParam(defaultValue = "docx") String fileType) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(documentService.getHistoryData(id, fileType, version));
+    }
+
+    /**
+     * 下载历史版本内容
+     * 
+     * ONLYOFFICE 通过此接口获取历史版本（setHistoryData 中的 url、previous.url）；
+     * 已归档的版本不会再变化，响应可以长期缓存，当前版本（含在外部替换、尚未归档的版本）每次验证
+     * 
+     * @param id 文档 ID
+     * @param version 版本号
+     * @param fileType 文件类型
+     * 
+     * @apiNote 示例请求: GET /api/history/test/2?fileType=docx
+     */
+    @GetMapping("/history/{id}/{version}")
+    public ResponseEntity<Resource> downloadHistoryVersion(
+            @PathVariable String id,
+            @PathVariable int version,
+            @RequestParam(defaultValue = "docx") String fileType) {
+        Path path = documentService.getHistoryFile(id, fileType, version, false);
+        return historyFile(path, MediaTypeFactory.getMediaType(path.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM));
+    }
+
+    /**
+     * 下载版本的变更记录（zip）
+     * 
+     * ONLYOFFICE 通过此接口获取变更记录（setHistoryData 中的 changesUrl）
+     * 
+     * @param id 文档 ID
+     * @param version 版本号
+     * @param fileType 文件类型
+     * 
+     * @apiNote 示例请求: GET /api/history/test/2/changes?fileType=docx
+     */
+    @GetMapping("/history/{id}/{version}/changes")
+    public ResponseEntity<Resource> downloadHistoryChanges(
+            @PathVariable String id,
+            @PathVariable int version,
+            @RequestParam(defaultValue = "docx") String fileType) {
+        Path path = documentService.getHistoryFile(id, fileType, version, true);
+        return historyFile(path, MediaType.valueOf("application/zip"));
+    }
+
+    /**
+     * 历史文件响应：已归档的文件内容不会再变化（URL 中带有内容哈希），其余的不缓存
+     */
+    private ResponseEntity<Resource> historyFile(Path path, MediaType contentType) {
+        String cacheControl = documentService.isArchivedHistoryFile(path)
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().getHeaderValue() + ", immutable"
+                : CacheControl.noCache().cachePrivate().getHeaderValue();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                .contentType(contentType)
+                .body(new FileSystemResource(path));
+    }
+
     /**
      * 获取 ONLYOFFICE 服务器信息
      * 
@@ -191,6 +578,141 @@ public class DocumentController {
         health.put("status", "ok");
         health.put("timestamp", System.currentTimeMillis());
         health.put("service", "onlyoffice-integration");
+        health.put("documentServerPool", documentService.getConnectionPoolStats());
+        health.put("saveQueue", documentService.getSaveQueueStats());
+        health.put("configCache", documentService.getConfigCacheStats());
+        health.put("documentIndex", fileStorageService.getIndexStats());
+        health.put("storageMigration", fileStorageService.getMigrationStats());
+        health.put("storageDedup", fileStorageService.getDedupStats());
+        health.put("storageLocks", fileStorageService.getLockStats());
+        health.put("storageFsync", fileStorageService.getFsyncStats());
+        health.put("fileServing", fileServingService.getStats());
+        health.put("chunkedUpload", chunkedUploadService.getStats());
+        health.put("documentServer", documentService.getDocumentServerHealth());
+        health.put("admission", admissionControl.getStats());
+        health.put("editSessions", documentService.getEditSessionStats());
+        health.put("history", documentService.getHistoryStats());
         return ResponseEntity.ok(health);
     }
+
+    /**
+     * 获取编辑会话
+     * 
+     * @return 编辑会话总数和各文档的编辑会话数
+     * 
+     * @apiNote 示例响应:
+     * {
+     *   "total": { "editors": 12, "pending": 1, "documents": 5, "maxEditors": 20, "downgraded": 3, ... },
+     *   "documents": { "合同": { "editors": 3, "pending": 0 }, ... }
+     * }
+     */
+    @GetMapping("/edit-sessions")
+    public ResponseEntity<Map<String, Object>> getEditSessions() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("total", documentService.getEditSessionStats());
+        result.put("documents", documentService.getDocumentEditSessions());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 深度健康检查接口（供负载均衡器使用）
+     * 
+     * 包含文档服务器熔断器状态和最近探测耗时；文档服务器熔断中时返回 503 和 Retry-After
+     * 
+     * @return 服务状态
+     * 
+     * @apiNote 示例响应:
+     * {
+     *   "status": "ok",
+     *   "documentServer": {
+     *     "state": "CLOSED", "available": true, "consecutiveFailures": 0, "opened": 0, "rejected": 0,
+     *     "probe": { "url": "http://localhost:8080/healthcheck", "lastProbeSuccess": true,
+     *                "samples": 60, "p50": 3.1, "p95": 8.7, "p99": 15.2, "max": 15.2 }
+     *   },
+     *   "saveQueue": { "queued": 0, "active": 0, ... }
+     * }
+     */
+    @GetMapping("/health/deep")
+    public ResponseEntity<Map<String, Object>> deepHealthCheck() {
+        Map<String, Object> documentServer = documentService.getDocumentServerHealth();
+        boolean available = Boolean.TRUE.equals(documentServer.get("available"));
+        
+        Map<String, Object> health = new HashMap<>();
+        health.put("status", available ? "ok" : "degraded");
+        health.put("timestamp", System.currentTimeMillis());
+        health.put("documentServer", documentServer);
+        health.put("saveQueue", documentService.getSaveQueueStats());
+        
+        if (available) {
+            return ResponseEntity.ok(health);
+        }
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(documentServer.get("retryAfter")))
+                .body(health);
+    }
+
+    /**
+     * 速率限制的客户端标识：已认证时按用户，否则按客户端地址
+     *
+     * 请求参数中的 userId 未经认证，客户端可以随意更换，不能作为限速依据
+     */
+    private static String clientKey(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        if (principal != null) {
+            return "user:" + principal.getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    /**
+     * 分块上传会话信息
+     */
+    private Map<String, Object> uploadStatus(ChunkedUploadService.Session session) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("uploadId", session.getUploadId());
+        status.put("documentId", session.getDocumentId());
+        status.put("fileType", session.getFileType());
+        status.put("size", session.getSize());
+        status.put("chunkSize", session.getChunkSize());
+        status.put("chunkCount", session.getChunkCount());
+        status.put("received", session.receivedChunks());
+        status.put("missing", session.missingCount());
+        return status;
+    }
+
+    /**
+     * 解析排序字段
+     */
+    private DocumentIndex.SortField parseSortField(String sort) {
+        try {
+            return DocumentIndex.SortField.valueOf(sort.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new DocumentException("不支持的排序字段: " + sort);
+        }
+    }
+
+    /**
+     * 以 JSON 数组输出文档列表
+     */
+    private void writeDocuments(OutputStream out, Stream<DocumentIndex.Entry> documents, long start)
+            throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+             Stream<DocumentIndex.Entry> stream = documents) {
+            generator.writeStartArray();
+            Iterator<DocumentIndex.Entry> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                DocumentIndex.Entry document = iterator.next();
+                generator.writeStartObject();
+                generator.writeStringField("id", document.getId());
+                generator.writeStringField("name", document.getFilename());
+                generator.writeStringField("fileType", document.getFileType());
+                generator.writeNumberField("size", document.getSize());
+                generator.writeNumberField("lastModified", document.getLastModified());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        } finally {
+            metrics.listDocuments(start);
+        }
+    }
 }
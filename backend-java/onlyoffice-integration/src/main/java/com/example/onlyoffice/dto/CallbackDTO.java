@@ -145,6 +145,15 @@ public class CallbackDTO {
         return status != null && (status == 2 || status == 6);
     }
 
+    /**
+     * 判断是否为编辑结束后的最终保存（强制保存不是）
+     * 
+     * @return true 如果是最终保存
+     */
+    public boolean isFinalSave() {
+        return status != null && status == 2;
+    }
+
     /**
      * 判断文档是否正在编辑
      * 
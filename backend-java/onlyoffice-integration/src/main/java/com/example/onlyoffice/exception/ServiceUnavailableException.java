@@ -0,0 +1,24 @@
+package com.example.onlyoffice.exception;
+
+/**
+ * 服务暂时不可用异常（并发数已达上限等），响应 503 并通过 Retry-After 告知客户端重试时间
+ * 
+ * @author Your Name
+ * @version 1.0.0
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+    /**
+     * 建议的重试等待时间（秒）
+     */
+    private final int retryAfter;
+
+    public ServiceUnavailableException(String message, int retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+}
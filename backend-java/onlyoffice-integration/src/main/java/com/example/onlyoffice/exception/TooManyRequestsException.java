@@ -0,0 +1,24 @@
+package com.example.onlyoffice.exception;
+
+/**
+ * 请求过于频繁异常（超过单个用户的速率限制），响应 429 并通过 Retry-After 告知客户端重试时间
+ * 
+ * @author Your Name
+ * @version 1.0.0
+ */
+public class TooManyRequestsException extends RuntimeException {
+
+    /**
+     * 建议的重试等待时间（秒）
+     */
+    private final int retryAfter;
+
+    public TooManyRequestsException(String message, int retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.exception.ServiceUnavailableException;
+import com.example.onlyoffice.exception.TooManyRequestsException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 准入控制
+ *
+ * 获取编辑器配置、上传和 ONLYOFFICE 回调共用 Tomcat 工作线程池，各类接口分别限制并发数（舱壁隔离）：
+ * 大文件上传集中到达时最多占用上传的并发数，回调和获取配置仍有可用的工作线程；
+ * 并发数达到上限时短暂等待后返回 503 和 Retry-After，不在工作线程中排队
+ *
+ * 获取配置和上传另按客户端（已认证时按用户，否则按客户端地址）以令牌桶限制速率，超出时返回 429 和 Retry-After
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class AdmissionControl {
+
+    /**
+     * 接口类别
+     */
+    public enum EndpointClass {
+        CONFIG,
+        UPLOAD,
+        CALLBACK
+    }
+
+    /**
+     * 已获得的并发许可，请求结束时关闭
+     */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Permit NO_PERMIT = () -> { };
+
+    private final OnlyOfficeProperties.Admission config;
+    private final ServiceMetrics metrics;
+    private final Map<EndpointClass, Bulkhead> bulkheads = new EnumMap<>(EndpointClass.class);
+
+    public AdmissionControl(OnlyOfficeProperties properties, ServiceMetrics metrics) {
+        this.config = properties.getAdmission();
+        this.metrics = metrics;
+        bulkheads.put(EndpointClass.CONFIG, new Bulkhead(EndpointClass.CONFIG, config.getConfig()));
+        bulkheads.put(EndpointClass.UPLOAD, new Bulkhead(EndpointClass.UPLOAD, config.getUpload()));
+        bulkheads.put(EndpointClass.CALLBACK, new Bulkhead(EndpointClass.CALLBACK, config.getCallback()));
+    }
+
+    /**
+     * 检查速率限制并获取并发许可
+     *
+     * @param endpoint 接口类别
+     * @param user 用户标识（为 null 时不检查速率限制）
+     * @return 并发许可，请求结束时关闭
+     * @throws TooManyRequestsException 超过用户速率限制
+     * @throws ServiceUnavailableException 并发数已达上限
+     */
+    public Permit enter(EndpointClass endpoint, String user) {
+        Bulkhead bulkhead = bulkheads.get(endpoint);
+        if (user != null) {
+            bulkhead.checkRate(user);
+        }
+        return bulkhead.acquire();
+    }
+
+    /**
+     * 当前并发数
+     */
+    public int active(EndpointClass endpoint) {
+        return bulkheads.get(endpoint).active();
+    }
+
+    /**
+     * 并发数上限（0 表示不限制）
+     */
+    public int maxConcurrent(EndpointClass endpoint) {
+        return bulkheads.get(endpoint).limit.getMaxConcurrent();
+    }
+
+    /**
+     * 获取准入控制状态
+     *
+     * @return 各类接口的统计: active, maxConcurrent, rejected（并发超限）, rateLimited（速率超限）, users（跟踪的用户数）
+     */
+    public Map<String, Map<String, Long>> getStats() {
+        Map<String, Map<String, Long>> stats = new HashMap<>();
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            Map<String, Long> endpoint = new HashMap<>();
+            endpoint.put("active", (long) bulkhead.active());
+            endpoint.put("maxConcurrent", (long) bulkhead.limit.getMaxConcurrent());
+            endpoint.put("rejected", bulkhead.rejected.get());
+            endpoint.put("rateLimited", bulkhead.rateLimited.get());
+            endpoint.put("users", (long) bulkhead.buckets.size());
+            stats.put(bulkhead.name, endpoint);
+        }
+        return stats;
+    }
+
+    /**
+     * 单类接口的并发隔离和速率限制
+     */
+    private class Bulkhead {
+        private final String name;
+        private final OnlyOfficeProperties.EndpointLimit limit;
+        private final Semaphore permits;
+        private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong rateLimited = new AtomicLong();
+        private final AtomicLong lastEviction = new AtomicLong(System.nanoTime());
+
+        Bulkhead(EndpointClass endpoint, OnlyOfficeProperties.EndpointLimit limit) {
+            this.name = endpoint.name().toLowerCase();
+            this.limit = limit;
+            this.permits = limit.getMaxConcurrent() > 0 ? new Semaphore(limit.getMaxConcurrent()) : null;
+        }
+
+        Permit acquire() {
+            if (permits == null) {
+                return NO_PERMIT;
+            }
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(limit.getAcquireTimeout(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                rejected.incrementAndGet();
+                metrics.bulkheadRejected(name);
+                throw new ServiceUnavailableException("并发请求数已达上限: " + name + " " + limit.getMaxConcurrent(),
+                        config.getRetryAfter());
+            }
+            return permits::release;
+        }
+
+        void checkRate(String user) {
+            if (limit.getRate() <= 0) {
+                return;
+            }
+            if (buckets.size() >= config.getMaxTrackedUsers()) {
+                evictIdle();
+            }
+            TokenBucket bucket = buckets.computeIfAbsent(user,
+                    u -> new TokenBucket(limit.getRate(), Math.max(1, limit.getBurst())));
+            long waitNanos = bucket.tryConsume();
+            if (waitNanos > 0) {
+                rateLimited.incrementAndGet();
+                metrics.rateLimited(name);
+                int retryAfter = (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+                throw new TooManyRequestsException("请求过于频繁: " + name + "，请 " + retryAfter + " 秒后重试",
+                        retryAfter);
+            }
+        }
+
+        int active() {
+            return permits == null ? 0 : limit.getMaxConcurrent() - permits.availablePermits();
+        }
+
+        /**
+         * 清理令牌已补满的用户（补满后与新用户等价），每秒最多一次
+         */
+        private void evictIdle() {
+            long now = System.nanoTime();
+            long last = lastEviction.get();
+            if (now - last < TimeUnit.SECONDS.toNanos(1) || !lastEviction.compareAndSet(last, now)) {
+                return;
+            }
+            int before = buckets.size();
+            buckets.values().removeIf(bucket -> bucket.isFull(now));
+            log.debug("清理空闲用户令牌桶: {}, {} -> {}", name, before, buckets.size());
+        }
+    }
+
+    /**
+     * 令牌桶：按 rate 每秒补充令牌，最多 capacity 个，每个请求消耗一个
+     */
+    private static class TokenBucket {
+        private final double nanosPerToken;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(double rate, int capacity) {
+            this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / rate;
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        /**
+         * 消耗一个令牌
+         *
+         * @return 0 表示成功，否则为还需等待的纳秒数
+         */
+        synchronized long tryConsume() {
+            refill(System.nanoTime());
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) * nanosPerToken);
+        }
+
+        synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+
+        private void refill(long now) {
+            long elapsed = now - lastRefill;
+            if (elapsed > 0) {
+                tokens = Math.min(capacity, tokens + elapsed / nanosPerToken);
+                lastRefill = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.onlyoffice.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内容寻址存储（去重）
+ *
+ * 文件内容按 SHA-256 保存在存储目录下的 .blobs/{前两位}/{sha256} 中，
+ * 文档文件是指向内容文件的硬链接：内容相同的文档共享同一份数据，
+ * 文档的读取、下载和索引都不需要区分是否去重
+ *
+ * 引用计数即文件系统的链接数：内容文件只剩自身一个链接时不再被任何文档引用，可以删除。
+ * 同一内容的发布和释放按哈希分段加锁互斥
+ *
+ * 文档必须以"写入临时文件后原子替换"的方式修改，原地修改文档文件会同时修改共享的内容
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Slf4j
+public class BlobStore {
+
+    /**
+     * 内容文件目录（位于存储目录下，保证硬链接和原子移动在同一文件系统内）
+     */
+    static final String BLOB_DIR = ".blobs";
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path root;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    /**
+     * 内容文件的 fileKey（设备号 + inode）-> SHA-256，用于通过文档文件找到其内容文件
+     */
+    private final ConcurrentHashMap<Object, String> hashes = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+
+    public BlobStore(Path uploadPath) {
+        this.root = uploadPath.resolve(BLOB_DIR);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * 检查文件系统支持并加载已有的内容文件，删除不再被引用的内容文件
+     *
+     * @return false 如果文件系统不支持硬链接或 inode（此时不启用去重）
+     */
+    public boolean start() throws IOException {
+        Files.createDirectories(root);
+        if (!supported()) {
+            return false;
+        }
+
+        int loaded = 0;
+        int orphans = 0;
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path shard : shards) {
+                try (DirectoryStream<Path> blobs = Files.newDirectoryStream(shard)) {
+                    for (Path blob : blobs) {
+                        if (linkCount(blob) <= 1) {
+                            // 上次运行中断时留下的内容文件
+                            Files.deleteIfExists(blob);
+                            orphans++;
+                        } else {
+                            hashes.put(fileKey(blob), blob.getFileName().toString());
+                            loaded++;
+                        }
+                    }
+                }
+            }
+        }
+        log.info("内容寻址存储: {}, {} 个内容文件, 清理未引用 {} 个", root, loaded, orphans);
+        return true;
+    }
+
+    /**
+     * 发布文档：临时文件的内容存入内容文件，目标文档原子替换为指向它的硬链接
+     *
+     * 内容已存在时丢弃临时文件；目标文档已指向相同内容时不做任何修改
+     *
+     * @param tempPath 临时文件（与目标文档在同一目录）
+     * @param target 目标文档路径
+     * @param sha256 临时文件内容的 SHA-256
+     */
+    public void publish(Path tempPath, Path target, String sha256) throws IOException {
+        Path blob = blobPath(sha256);
+        Object previous = fileKeyOf(target);
+
+        synchronized (lockFor(sha256)) {
+            boolean created = false;
+            if (Files.exists(blob)) {
+                Files.deleteIfExists(tempPath);
+                hits.incrementAndGet();
+                if (fileKey(blob).equals(previous)) {
+                    // 内容未变化
+                    unchanged.incrementAndGet();
+                    return;
+                }
+            } else {
+                Files.createDirectories(blob.getParent());
+                Files.move(tempPath, blob, StandardCopyOption.ATOMIC_MOVE);
+                hashes.put(fileKey(blob), sha256);
+                created = true;
+            }
+
+            // 在目标目录建立链接后原子替换（临时文件名已空出，复用为链接名）
+            try {
+                Files.createLink(tempPath, blob);
+                Files.move(tempPath, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                if (!created) {
+                    // 链接与内容文件共享 inode，修改时间仍是内容文件创建时的；文档的版本（key）依赖修改时间
+                    Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+                }
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(tempPath);
+                if (created) {
+                    deleteBlob(blob);
+                }
+                throw e;
+            }
+        }
+
+        if (previous != null) {
+            release(previous);
+        }
+    }
+
+    /**
+     * 释放文档原来引用的内容（文档被替换或删除后调用），没有其他引用时删除内容文件
+     *
+     * @param fileKey 文档原来的 fileKey（{@link #fileKeyOf}），不是内容文件时忽略
+     */
+    public void release(Object fileKey) {
+        String sha256 = hashes.get(fileKey);
+        if (sha256 == null) {
+            return;
+        }
+        Path blob = blobPath(sha256);
+        synchronized (lockFor(sha256)) {
+            try {
+                if (linkCount(blob) <= 1) {
+                    deleteBlob(blob);
+                    hashes.remove(fileKey);
+                    released.incrementAndGet();
+                }
+            } catch (NoSuchFileException e) {
+                hashes.remove(fileKey);
+            } catch (IOException e) {
+                log.warn("释放内容文件失败: {}, {}", sha256, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 获取文件的 fileKey
+     *
+     * @param path 文件路径
+     * @return fileKey，文件不存在时返回 null
+     */
+    public Object fileKeyOf(Path path) throws IOException {
+        try {
+            return fileKey(path);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 文档内容的 SHA-256
+     *
+     * @param path 文档路径
+     * @return SHA-256，不是指向内容文件的文档时返回 null
+     */
+    public String hashOf(Path path) throws IOException {
+        Object fileKey = fileKeyOf(path);
+        return fileKey != null ? hashes.get(fileKey) : null;
+    }
+
+    /**
+     * 获取去重状态
+     *
+     * @return 统计: blobs（内容文件数）, hits（内容已存在）, unchanged（内容未变化）, released（已删除的内容文件）
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<>();
+        stats.put("blobs", (long) hashes.size());
+        stats.put("hits", hits.get());
+        stats.put("unchanged", unchanged.get());
+        stats.put("released", released.get());
+        return stats;
+    }
+
+    private Path blobPath(String sha256) {
+        return root.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    private Object lockFor(String sha256) {
+        return locks[(sha256.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
+
+    private void deleteBlob(Path blob) {
+        try {
+            Files.deleteIfExists(blob);
+        } catch (IOException e) {
+            log.warn("删除内容文件失败: {}", blob);
+        }
+    }
+
+    /**
+     * 文件系统是否支持硬链接、链接数和 fileKey
+     */
+    private boolean supported() {
+        Path probe = root.resolve("probe-" + System.nanoTime());
+        Path link = root.resolve(probe.getFileName() + "_link");
+        try {
+            Files.createFile(probe);
+            Files.createLink(link, probe);
+            return fileKey(probe) != null && fileKey(probe).equals(fileKey(link)) && linkCount(probe) == 2;
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            log.warn("文件系统不支持硬链接，不启用去重: {}", e.getMessage());
+            return false;
+        } finally {
+            try {
+                Files.deleteIfExists(link);
+                Files.deleteIfExists(probe);
+            } catch (IOException e) {
+                log.warn("删除探测文件失败: {}", probe);
+            }
+        }
+    }
+
+    private static Object fileKey(Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    }
+
+    private static int linkCount(Path path) throws IOException {
+        return (Integer) Files.getAttribute(path, "unix:nlink");
+    }
+}
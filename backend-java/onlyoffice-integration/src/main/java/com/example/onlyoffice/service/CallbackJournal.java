@@ -0,0 +1,474 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.dto.CallbackDTO;
+import com.example.onlyoffice.exception.FileStorageException;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 回调日志
+ *
+ * 以追加方式记录待保存的回调（SAVE）、已完成的保存（DONE）和多次重试仍失败的保存（DEAD），
+ * 服务重启后重放未完成的记录，保证已应答的保存不会丢失；失败的保存作为死信保留在日志中（含回调数据），
+ * 不再重放，由运维处理（状态见健康检查 saveQueue.deadLetters）
+ *
+ * 每行一条 JSON 记录。日志超过阈值时只保留未完成的记录重写（写入临时文件后原子替换），
+ * 回调持续到达、始终有未完成记录时日志也不会无限增长
+ *
+ * always 刷盘策略下记录在锁内写入（只写到页缓存），刷盘在锁外进行并合并：同一时刻只有一个线程刷盘，
+ * 一次刷盘覆盖此前写入的所有记录，等待中的线程发现自己的记录已被覆盖时直接返回，不再各自刷盘
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class CallbackJournal {
+
+    private static final String JOURNAL_FILE = "callback-journal.log";
+
+    private static final String OP_SAVE = "SAVE";
+    private static final String OP_DONE = "DONE";
+    private static final String OP_DEAD = "DEAD";
+
+    /**
+     * 日志超过此大小（且超过上次压缩后大小的两倍）时压缩
+     */
+    private static final long COMPACT_THRESHOLD = 4L * 1024 * 1024;
+
+    private final OnlyOfficeProperties properties;
+    private final ObjectMapper objectMapper;
+
+    private Path journalPath;
+    private FileChannel channel;
+    private ScheduledExecutorService fsyncScheduler;
+
+    /**
+     * 未完成的记录（按序号排列）
+     */
+    private final Map<Long, Entry> pending = new LinkedHashMap<>();
+
+    /**
+     * 死信（按序号排列），压缩时保留
+     */
+    private final Map<Long, Entry> deadLetters = new LinkedHashMap<>();
+    private long nextSeq = 1;
+
+    /**
+     * 已写入的记录数（写入标记），在锁内递增
+     */
+    private long written;
+
+    /**
+     * 已刷盘（或已随压缩持久化）的写入标记
+     */
+    private final AtomicLong synced = new AtomicLong();
+
+    /**
+     * 刷盘锁：持有者刷盘时其他线程排队，醒来后多数已被覆盖（与日志锁的顺序：先刷盘锁后日志锁）
+     */
+    private final Object syncLock = new Object();
+
+    private final AtomicLong syncs = new AtomicLong();
+
+    /**
+     * 上次压缩后的日志大小（未完成的记录很多时避免反复压缩）
+     */
+    private long compactedSize;
+
+    public CallbackJournal(OnlyOfficeProperties properties, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 打开日志，读取未完成的记录并重写日志
+     */
+    @PostConstruct
+    public void init() {
+        Path journalDir = Paths.get(properties.getCallback().getJournalDir())
+                .toAbsolutePath()
+                .normalize();
+        this.journalPath = journalDir.resolve(JOURNAL_FILE);
+
+        try {
+            Files.createDirectories(journalDir);
+            load();
+            rewrite();
+            this.channel = open();
+            this.compactedSize = channel.size();
+        } catch (IOException e) {
+            throw new FileStorageException("无法打开回调日志: " + journalPath, e);
+        }
+
+        if (properties.getCallback().getJournalFsync() == OnlyOfficeProperties.JournalFsync.INTERVAL) {
+            int interval = properties.getCallback().getFsyncInterval();
+            this.fsyncScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "callback-journal-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // 异常会让定时任务停止执行，在任务内记录
+            fsyncScheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    log.error("回调日志定时刷盘失败: {}", e.getMessage());
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+
+        log.info("回调日志初始化完成: {}, 未完成记录 {} 条", journalPath, pending.size());
+        if (!deadLetters.isEmpty()) {
+            log.warn("回调日志中有 {} 条保存失败的死信", deadLetters.size());
+        }
+    }
+
+    /**
+     * 关闭日志
+     */
+    @PreDestroy
+    public void close() {
+        if (fsyncScheduler != null) {
+            fsyncScheduler.shutdownNow();
+        }
+        synchronized (this) {
+            try {
+                if (channel != null && channel.isOpen()) {
+                    channel.force(false);
+                    channel.close();
+                }
+            } catch (IOException e) {
+                log.warn("关闭回调日志失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 记录待保存的回调
+     *
+     * 方法返回时记录已按刷盘策略写入日志（always 策略下与并发写入的记录合并刷盘）
+     *
+     * @param documentId 文档 ID
+     * @param callback 回调数据
+     * @return 记录
+     */
+    public Entry append(String documentId, CallbackDTO callback) {
+        Entry entry;
+        long mark;
+        synchronized (this) {
+            entry = new Entry(OP_SAVE, nextSeq++, documentId, callback, null);
+            mark = write(entry);
+            pending.put(entry.getSeq(), entry);
+        }
+        if (properties.getCallback().getJournalFsync() == OnlyOfficeProperties.JournalFsync.ALWAYS) {
+            sync(mark);
+        }
+        return entry;
+    }
+
+    /**
+     * 标记记录已完成
+     *
+     * 完成标记不强制刷盘，丢失时重启后会重复保存一次（保存是幂等的）
+     *
+     * @param seq 记录序号
+     */
+    public synchronized void complete(long seq) {
+        if (pending.remove(seq) == null) {
+            return;
+        }
+        write(new Entry(OP_DONE, seq, null, null, null));
+        compactIfNeeded();
+    }
+
+    /**
+     * 记录为死信：多次重试仍失败的保存不再重放，连同回调数据保留在日志中
+     *
+     * 死信标记不强制刷盘，丢失时重启后会再重试一次
+     *
+     * @param seq 记录序号
+     * @param error 最后一次失败的原因
+     */
+    public synchronized void deadLetter(long seq, String error) {
+        Entry entry = pending.remove(seq);
+        if (entry == null) {
+            return;
+        }
+        Entry dead = new Entry(OP_DEAD, seq, entry.getDocumentId(), entry.getCallback(), error);
+        write(dead);
+        deadLetters.put(seq, dead);
+    }
+
+    /**
+     * 获取死信
+     *
+     * @return 按序号排列的记录
+     */
+    public synchronized List<Entry> deadLetters() {
+        return new ArrayList<>(deadLetters.values());
+    }
+
+    /**
+     * 死信数
+     */
+    public synchronized int deadLetterCount() {
+        return deadLetters.size();
+    }
+
+    /**
+     * 获取未完成的记录（用于启动时重放）
+     *
+     * @return 按序号排列的记录
+     */
+    public synchronized List<Entry> pendingEntries() {
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * 刷盘次数（always 策略下小于写入的记录数说明发生了合并）
+     */
+    public long syncCount() {
+        return syncs.get();
+    }
+
+    /**
+     * 定时刷盘
+     */
+    public void flush() {
+        long mark;
+        synchronized (this) {
+            mark = written;
+        }
+        sync(mark);
+    }
+
+    /**
+     * 写入一条记录（只写到页缓存）
+     *
+     * @return 写入标记，传给 {@link #sync(long)} 等待该记录刷盘
+     */
+    private long write(Entry entry) {
+        try {
+            byte[] line = objectMapper.writeValueAsBytes(entry);
+            ByteBuffer buffer = ByteBuffer.allocate(line.length + 1);
+            buffer.put(line).put((byte) '\n').flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return ++written;
+        } catch (IOException e) {
+            throw new FileStorageException("写入回调日志失败", e);
+        }
+    }
+
+    /**
+     * 等待写入标记之前的记录刷盘，必要时由当前线程刷盘（覆盖到刷盘开始时已写入的所有记录）
+     *
+     * 不能在持有日志锁时调用
+     */
+    private void sync(long mark) {
+        if (synced.get() >= mark) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (synced.get() >= mark) {
+                return;
+            }
+            FileChannel current;
+            long target;
+            synchronized (this) {
+                current = channel;
+                target = written;
+            }
+            try {
+                current.force(false);
+                syncs.incrementAndGet();
+            } catch (ClosedChannelException e) {
+                // 刷盘期间日志被压缩替换：压缩前写入的记录已随新文件刷盘（取得日志锁时压缩已完成）
+                synchronized (this) {
+                    if (synced.get() >= mark) {
+                        return;
+                    }
+                }
+                throw new FileStorageException("回调日志刷盘失败", e);
+            } catch (IOException e) {
+                throw new FileStorageException("回调日志刷盘失败", e);
+            }
+            synced.accumulateAndGet(target, Math::max);
+        }
+    }
+
+    /**
+     * 日志过大时只保留未完成的记录重写
+     */
+    private void compactIfNeeded() {
+        long size;
+        try {
+            size = channel.size();
+            if (size <= COMPACT_THRESHOLD || size <= compactedSize * 2) {
+                return;
+            }
+            rewrite();
+        } catch (IOException e) {
+            log.warn("压缩回调日志失败: {}", e.getMessage());
+            return;
+        }
+
+        // 原文件已被替换，改为追加到新文件
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("关闭回调日志失败: {}", e.getMessage());
+        }
+        try {
+            channel = open();
+            compactedSize = channel.size();
+            // 重写的日志已刷盘，此前写入的记录都已持久化
+            synced.accumulateAndGet(written, Math::max);
+            log.debug("回调日志已压缩: {} -> {} 字节, 未完成记录 {} 条", size, compactedSize, pending.size());
+        } catch (IOException e) {
+            throw new FileStorageException("无法打开回调日志: " + journalPath, e);
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * 读取日志中未完成的记录
+     */
+    private void load() throws IOException {
+        if (!Files.exists(journalPath)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                Entry entry;
+                try {
+                    entry = objectMapper.readValue(line, Entry.class);
+                } catch (IOException e) {
+                    // 崩溃时最后一行可能不完整
+                    log.warn("跳过损坏的回调日志记录: {}", e.getMessage());
+                    continue;
+                }
+                if (OP_SAVE.equals(entry.getOp())) {
+                    pending.put(entry.getSeq(), entry);
+                } else if (OP_DONE.equals(entry.getOp())) {
+                    pending.remove(entry.getSeq());
+                } else if (OP_DEAD.equals(entry.getOp())) {
+                    pending.remove(entry.getSeq());
+                    deadLetters.put(entry.getSeq(), entry);
+                }
+                nextSeq = Math.max(nextSeq, entry.getSeq() + 1);
+            }
+        }
+    }
+
+    /**
+     * 只保留未完成的记录和死信重写日志
+     */
+    private void rewrite() throws IOException {
+        Path tempPath = journalPath.resolveSibling(JOURNAL_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(tempPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            List<Entry> entries = new ArrayList<>(deadLetters.values());
+            entries.addAll(pending.values());
+            for (Entry entry : entries) {
+                byte[] line = objectMapper.writeValueAsBytes(entry);
+                ByteBuffer buffer = ByteBuffer.allocate(line.length + 1);
+                buffer.put(line).put((byte) '\n').flip();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            out.force(true);
+        }
+        Files.move(tempPath, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+    }
+
+    /**
+     * 刷新日志所在目录，替换本身在断电后仍然有效（目录不能打开为通道的平台不刷新）
+     */
+    private void syncDirectory() {
+        if (System.getProperty("os.name", "").startsWith("Windows")) {
+            return;
+        }
+        try (FileChannel directory = FileChannel.open(journalPath.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            log.warn("回调日志目录刷盘失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 日志记录
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Entry {
+        /**
+         * 操作类型: SAVE, DONE, DEAD
+         */
+        private String op;
+
+        /**
+         * 记录序号
+         */
+        private long seq;
+
+        /**
+         * 文档 ID
+         */
+        private String documentId;
+
+        /**
+         * 回调数据
+         */
+        private CallbackDTO callback;
+
+        /**
+         * 死信的失败原因
+         */
+        private String error;
+    }
+}
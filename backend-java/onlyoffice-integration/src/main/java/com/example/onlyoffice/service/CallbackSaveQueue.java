@@ -0,0 +1,386 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.dto.CallbackDTO;
+import com.example.onlyoffice.exception.ServiceUnavailableException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 回调保存队列
+ *
+ * 需要保存的回调先写入 {@link CallbackJournal}，再由有界工作线程池异步下载保存，
+ * 最终保存（status 2）优先于强制保存（status 6）
+ *
+ * 同一文档的保存按文档 ID 合并：排队中的强制保存被更新的保存取代，只下载最新版本；
+ * 最终保存各自生成一个历史版本，不会被取代，按到达顺序依次执行。正在执行的保存会执行完毕，
+ * 同一文档的保存不会并行
+ *
+ * 文档服务器熔断中（{@link ServiceUnavailableException}）的保存不计入尝试次数，熔断结束后再执行；
+ * 达到最大尝试次数仍失败的保存记为日志中的死信，不会被标记为完成
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class CallbackSaveQueue {
+
+    /**
+     * 提交锁分段数（同一文档的写日志和入队互斥）
+     */
+    private static final int SUBMIT_LOCK_STRIPES = 64;
+
+    private final OnlyOfficeProperties properties;
+    private final CallbackJournal journal;
+
+    private final PriorityBlockingQueue<SaveTask> queue = new PriorityBlockingQueue<>();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+
+    /**
+     * 各文档的保存状态（仅包含有排队或执行中保存的文档）
+     */
+    private final ConcurrentHashMap<String, DocumentState> documents = new ConcurrentHashMap<>();
+    private final AtomicInteger queuedTasks = new AtomicInteger();
+    private final AtomicLong coalescedTasks = new AtomicLong();
+    private final AtomicLong overCapacity = new AtomicLong();
+    private final Object[] submitLocks = new Object[SUBMIT_LOCK_STRIPES];
+
+    private ExecutorService workers;
+    private ScheduledExecutorService retryScheduler;
+    private Consumer<CallbackDTO> saveHandler;
+    private volatile boolean running;
+
+    public CallbackSaveQueue(OnlyOfficeProperties properties, CallbackJournal journal) {
+        this.properties = properties;
+        this.journal = journal;
+        for (int i = 0; i < submitLocks.length; i++) {
+            submitLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * 启动工作线程并重放日志中未完成的保存
+     *
+     * @param saveHandler 实际执行下载保存的处理器
+     */
+    public synchronized void start(Consumer<CallbackDTO> saveHandler) {
+        if (running) {
+            return;
+        }
+        this.saveHandler = saveHandler;
+        this.running = true;
+
+        int workerCount = Math.max(1, properties.getCallback().getWorkers());
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread thread = new Thread(r, "callback-save-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "callback-save-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // 重放未完成的保存
+        List<CallbackJournal.Entry> entries = journal.pendingEntries();
+        for (CallbackJournal.Entry entry : entries) {
+            enqueue(new SaveTask(entry.getSeq(), entry.getDocumentId(), entry.getCallback()));
+        }
+        if (!entries.isEmpty()) {
+            log.info("重放未完成的保存: {} 条", entries.size());
+        }
+
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::workerLoop);
+        }
+        log.info("回调保存队列启动: workers={}, capacity={}",
+                workerCount, properties.getCallback().getQueueCapacity());
+    }
+
+    /**
+     * 停止工作线程
+     *
+     * 正在执行的保存会等待完成，队列中未执行的保存保留在日志中，下次启动时重放
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (retryScheduler != null) {
+            retryScheduler.shutdownNow();
+        }
+        if (workers != null) {
+            workers.shutdown();
+            try {
+                if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                    workers.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                workers.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.info("回调保存队列已停止, 未执行 {} 条", queuedTasks.get());
+    }
+
+    /**
+     * 提交保存
+     *
+     * 回调写入日志后立即返回，不在调用线程中保存。排队数超过容量时仍然入队（回调已写入日志并将被应答，
+     * 不能丢弃，同步保存又会阻塞请求线程），记录警告和 overCapacity 计数
+     *
+     * @param documentId 文档 ID
+     * @param callback 回调数据
+     */
+    public void submit(String documentId, CallbackDTO callback) {
+        // 写日志和入队在同一临界区内：同一文档的保存按日志序号入队，较早的下载不会覆盖较新的
+        CallbackJournal.Entry entry;
+        synchronized (submitLocks[(documentId.hashCode() & 0x7fffffff) % submitLocks.length]) {
+            entry = journal.append(documentId, callback);
+            enqueue(new SaveTask(entry.getSeq(), documentId, callback));
+        }
+
+        int queued = queuedTasks.get();
+        if (queued > properties.getCallback().getQueueCapacity()) {
+            overCapacity.incrementAndGet();
+            log.warn("保存队列超过容量: queued={}, capacity={}, documentId={}",
+                    queued, properties.getCallback().getQueueCapacity(), documentId);
+        }
+        log.debug("保存已入队: documentId={}, seq={}, status={}", documentId, entry.getSeq(), callback.getStatus());
+    }
+
+    /**
+     * 按文档合并入队
+     *
+     * 排在最后的是强制保存时被新的保存取代（强制保存的内容已包含在更新的保存中），
+     * 否则排在其后；只有排在最前且没有执行中保存的任务放入队列
+     */
+    private void enqueue(SaveTask task) {
+        List<SaveTask> superseded = new ArrayList<>(1);
+        documents.compute(task.getDocumentId(), (id, state) -> {
+            if (state == null) {
+                state = new DocumentState();
+            }
+            SaveTask last = state.pending.peekLast();
+            if (last != null && !last.isFinalSave()) {
+                state.pending.pollLast();
+                last.superseded = true;
+                superseded.add(last);
+            } else {
+                queuedTasks.incrementAndGet();
+            }
+            state.pending.addLast(task);
+            if (!state.inFlight && state.pending.peekFirst() == task) {
+                queue.offer(task);
+            }
+            return state;
+        });
+
+        for (SaveTask previous : superseded) {
+            journal.complete(previous.getSeq());
+            coalescedTasks.incrementAndGet();
+            log.debug("保存已合并: documentId={}, seq={}", task.getDocumentId(), previous.getSeq());
+        }
+    }
+
+    /**
+     * 将排在最前的保存标记为执行中
+     *
+     * @return false 如果该保存已被取代
+     */
+    private boolean markInFlight(SaveTask task) {
+        boolean[] acquired = new boolean[1];
+        documents.computeIfPresent(task.getDocumentId(), (id, state) -> {
+            if (state.pending.peekFirst() == task && !state.inFlight) {
+                state.pending.pollFirst();
+                state.inFlight = true;
+                queuedTasks.decrementAndGet();
+                acquired[0] = true;
+            }
+            return state;
+        });
+        return acquired[0];
+    }
+
+    /**
+     * 执行完毕，放入排在最前的下一次保存
+     */
+    private void markDone(SaveTask task) {
+        documents.computeIfPresent(task.getDocumentId(), (id, state) -> {
+            state.inFlight = false;
+            if (!state.pending.isEmpty()) {
+                queue.offer(state.pending.peekFirst());
+                return state;
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 获取队列状态
+     *
+     * @return 队列统计: queued（排队中）, coalesced（已合并）, active（执行中）, workers（工作线程数）, capacity（容量）,
+     *         overCapacity（超过容量时入队的次数）, deadLetters（多次重试仍失败的保存）
+     */
+    public Map<String, Integer> getStats() {
+        Map<String, Integer> stats = new HashMap<>();
+        stats.put("queued", queuedTasks.get());
+        stats.put("coalesced", (int) coalescedTasks.get());
+        stats.put("active", activeWorkers.get());
+        stats.put("workers", properties.getCallback().getWorkers());
+        stats.put("capacity", properties.getCallback().getQueueCapacity());
+        stats.put("overCapacity", (int) overCapacity.get());
+        stats.put("deadLetters", journal.deadLetterCount());
+        return stats;
+    }
+
+    private void workerLoop() {
+        while (running) {
+            SaveTask task;
+            try {
+                task = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (task != null && !task.superseded && markInFlight(task)) {
+                execute(task);
+            }
+        }
+    }
+
+    private void execute(SaveTask task) {
+        activeWorkers.incrementAndGet();
+        boolean retry = false;
+        long retryDelay = properties.getCallback().getRetryDelay();
+        try {
+            task.attempts++;
+            saveHandler.accept(task.getCallback());
+            journal.complete(task.getSeq());
+        } catch (ServiceUnavailableException e) {
+            // 文档服务器熔断中，延后到熔断结束
+            task.attempts--;
+            retry = running;
+            retryDelay = TimeUnit.SECONDS.toMillis(e.getRetryAfter());
+            log.info("文档服务器不可用，延后保存: documentId={}, {} 秒后重试", task.getDocumentId(), e.getRetryAfter());
+        } catch (Exception e) {
+            int maxAttempts = properties.getCallback().getMaxAttempts();
+            if (task.attempts < maxAttempts && running) {
+                log.warn("保存失败，稍后重试: documentId={}, attempt={}/{}, error={}",
+                        task.getDocumentId(), task.attempts, maxAttempts, e.getMessage());
+                retry = true;
+            } else if (running) {
+                log.error("保存失败，已记为死信: documentId={}, seq={}, attempts={}, error={}",
+                        task.getDocumentId(), task.getSeq(), task.attempts, e.getMessage());
+                journal.deadLetter(task.getSeq(), e.getMessage());
+            }
+        } finally {
+            activeWorkers.decrementAndGet();
+        }
+
+        if (retry) {
+            // 等待重试期间文档仍视为执行中，新到达的保存排在其后
+            retryScheduler.schedule(() -> retry(task), retryDelay, TimeUnit.MILLISECONDS);
+        } else {
+            markDone(task);
+        }
+    }
+
+    /**
+     * 重试失败的保存
+     *
+     * 等待期间已有更新的保存时，强制保存放弃重试改为执行更新的保存；最终保存仍排在最前重试
+     */
+    private void retry(SaveTask task) {
+        boolean[] superseded = new boolean[1];
+        documents.computeIfPresent(task.getDocumentId(), (id, state) -> {
+            state.inFlight = false;
+            if (!state.pending.isEmpty() && !task.isFinalSave()) {
+                superseded[0] = true;
+            } else {
+                state.pending.addFirst(task);
+                queuedTasks.incrementAndGet();
+            }
+            queue.offer(state.pending.peekFirst());
+            return state;
+        });
+
+        if (superseded[0]) {
+            journal.complete(task.getSeq());
+            coalescedTasks.incrementAndGet();
+            log.debug("重试已被更新的保存取代: documentId={}, seq={}", task.getDocumentId(), task.getSeq());
+        }
+    }
+
+    /**
+     * 保存任务
+     *
+     * 最终保存（status 2）优先，同优先级按日志序号先后执行
+     */
+    @Getter
+    static class SaveTask implements Comparable<SaveTask> {
+        private final long seq;
+        private final String documentId;
+        private final CallbackDTO callback;
+        private final int priority;
+        private int attempts;
+        private volatile boolean superseded;
+
+        SaveTask(long seq, String documentId, CallbackDTO callback) {
+            this.seq = seq;
+            this.documentId = documentId;
+            this.callback = callback;
+            this.priority = callback.isFinalSave() ? 0 : 1;
+        }
+
+        boolean isFinalSave() {
+            return priority == 0;
+        }
+
+        @Override
+        public int compareTo(SaveTask other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(seq, other.seq);
+        }
+    }
+
+    /**
+     * 单个文档的保存状态
+     */
+    private static class DocumentState {
+        /**
+         * 排队中的保存：按到达顺序的最终保存，最后可能还有一个强制保存
+         */
+        private final Deque<SaveTask> pending = new ArrayDeque<>(2);
+
+        /**
+         * 是否有保存正在执行
+         */
+        private boolean inFlight;
+    }
+}
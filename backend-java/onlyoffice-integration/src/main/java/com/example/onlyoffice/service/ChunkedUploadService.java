@@ -0,0 +1,445 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.exception.FileNotFoundException;
+import com.example.onlyoffice.exception.FileStorageException;
+import com.example.onlyoffice.exception.InvalidFileException;
+import com.example.onlyoffice.exception.ServiceUnavailableException;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分块上传服务
+ *
+ * 大文件拆分为固定大小的分块上传，网络中断后只需重传未完成的分块：
+ * 1. 创建会话时在存储目录中预分配临时文件（见 {@link FileStorageService#createTempFile}）
+ * 2. 各分块可以并行、以任意顺序上传，按位置写入临时文件
+ * 3. 提交时检查所有分块已收到、总大小和 SHA-256，然后原子替换目标文件
+ *
+ * 会话保存在内存中，空闲超过 sessionTtl 的会话由后台线程清理并删除临时文件；
+ * 服务重启后未完成的会话需要重新开始
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Slf4j
+@Service
+public class ChunkedUploadService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OnlyOfficeProperties.ChunkedUpload config;
+    private final FileStorageService fileStorageService;
+    private final ServiceMetrics metrics;
+
+    /**
+     * 上传 ID -> 会话
+     */
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    private ScheduledExecutorService cleanupScheduler;
+
+    public ChunkedUploadService(OnlyOfficeProperties properties, FileStorageService fileStorageService,
+                                ServiceMetrics metrics) {
+        this.config = properties.getChunkedUpload();
+        this.fileStorageService = fileStorageService;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 启动放弃会话的清理线程
+     */
+    @PostConstruct
+    public void init() {
+        this.cleanupScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chunked-upload-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int interval = Math.max(1, config.getCleanupInterval());
+        cleanupScheduler.scheduleWithFixedDelay(this::cleanup, interval, interval, TimeUnit.SECONDS);
+        log.info("分块上传: chunkSize={}, maxSessions={}, sessionTtl={}s",
+                config.getChunkSize(), config.getMaxSessions(), config.getSessionTtl());
+    }
+
+    /**
+     * 停止清理线程并删除未完成会话的临时文件
+     */
+    @PreDestroy
+    public void destroy() {
+        if (cleanupScheduler != null) {
+            cleanupScheduler.shutdownNow();
+        }
+        for (Session session : sessions.values()) {
+            abort(session);
+        }
+    }
+
+    /**
+     * 创建上传会话
+     *
+     * @param documentId 文档 ID
+     * @param fileType 文件类型（必须是允许的类型）
+     * @param size 文件总大小
+     * @param sha256 文件内容的 SHA-256（十六进制，可选，提交时校验）
+     * @return 会话
+     */
+    public Session create(String documentId, String fileType, long size, String sha256) {
+        if (size < 0) {
+            throw new InvalidFileException("无效的文件大小: " + size);
+        }
+        fileStorageService.validateUpload(documentId, fileType, size);
+        if (sessions.size() >= config.getMaxSessions()) {
+            throw new ServiceUnavailableException("上传会话数已达上限: " + config.getMaxSessions(),
+                    config.getRetryAfter());
+        }
+
+        Path tempPath = fileStorageService.createTempFile(documentId, fileType);
+        try (RandomAccessFile file = new RandomAccessFile(tempPath.toFile(), "rw")) {
+            // 预分配，各分块按位置写入
+            file.setLength(size);
+        } catch (IOException e) {
+            fileStorageService.discardTempFile(tempPath);
+            throw new FileStorageException("创建上传会话失败: " + documentId + "." + fileType, e);
+        }
+
+        Session session = new Session(UUID.randomUUID().toString(), documentId, fileType, size,
+                config.getChunkSize(), sha256 == null || sha256.isEmpty() ? null : sha256.toLowerCase(), tempPath);
+        sessions.put(session.getUploadId(), session);
+        log.info("创建上传会话: uploadId={}, documentId={}, size={}, chunks={}",
+                session.getUploadId(), documentId, size, session.getChunkCount());
+        return session;
+    }
+
+    /**
+     * 获取上传会话
+     *
+     * @param uploadId 上传 ID
+     * @return 会话
+     */
+    public Session get(String uploadId) {
+        Session session = sessions.get(uploadId);
+        if (session == null) {
+            throw new FileNotFoundException("上传会话不存在或已过期: " + uploadId);
+        }
+        return session;
+    }
+
+    /**
+     * 写入分块
+     *
+     * 同一分块可以重复上传（后写入的覆盖先写入的）
+     *
+     * @param uploadId 上传 ID
+     * @param index 分块序号（从 0 开始）
+     * @param inputStream 分块内容
+     * @param contentLength 内容长度（未知时传 -1）
+     */
+    public void writeChunk(String uploadId, int index, InputStream inputStream, long contentLength) {
+        Session session = get(uploadId);
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new InvalidFileException("无效的分块序号: " + index + "，共 " + session.getChunkCount() + " 块");
+        }
+        long offset = (long) index * session.getChunkSize();
+        long length = Math.min(session.getChunkSize(), session.getSize() - offset);
+        if (contentLength >= 0 && contentLength != length) {
+            throw new InvalidFileException("分块 " + index + " 大小应为 " + length + "，实际为 " + contentLength);
+        }
+
+        session.beginWrite(index);
+        boolean completed = false;
+        try (FileChannel channel = FileChannel.open(session.getTempPath(), StandardOpenOption.WRITE)) {
+            long written = copy(inputStream, channel, offset, length);
+            if (written != length) {
+                throw new InvalidFileException("分块 " + index + " 不完整: " + written + " / " + length);
+            }
+            completed = true;
+        } catch (IOException e) {
+            throw new FileStorageException("写入分块失败: " + uploadId + "#" + index, e);
+        } finally {
+            session.endWrite(index, completed);
+        }
+        log.debug("收到分块: uploadId={}, index={}, size={}", uploadId, index, length);
+    }
+
+    /**
+     * 提交上传
+     *
+     * 检查所有分块已收到，计算 SHA-256 并与创建会话时提供的值比较，然后原子替换目标文件
+     *
+     * @param uploadId 上传 ID
+     * @param sha256 文件内容的 SHA-256（可选，未提供时使用创建会话时的值）
+     * @return 保存结果
+     */
+    public FileStorageService.SavedFile commit(String uploadId, String sha256) {
+        Session session = get(uploadId);
+        session.beginCommit();
+        try {
+            List<Integer> missing = session.missingChunks(1);
+            if (!missing.isEmpty()) {
+                throw new InvalidFileException("还有 " + session.missingCount() + " 个分块未上传，如分块 " + missing.get(0));
+            }
+
+            long size = session.getTempPath().toFile().length();
+            if (size != session.getSize()) {
+                throw new InvalidFileException("文件大小不一致: " + size + " / " + session.getSize());
+            }
+
+            String actual = fileStorageService.sha256Of(session.getTempPath());
+            String expected = sha256 != null && !sha256.isEmpty() ? sha256.toLowerCase() : session.getSha256();
+            if (expected != null && !expected.equals(actual)) {
+                throw new InvalidFileException("SHA-256 不一致: " + actual);
+            }
+
+            // 提交失败时临时文件已被删除，会话随之结束
+            sessions.remove(uploadId);
+            fileStorageService.commitTempFile(session.getTempPath(), session.getDocumentId(), session.getFileType(),
+                    actual);
+            committed.incrementAndGet();
+            metrics.upload("chunked", size);
+            log.info("上传完成: uploadId={}, documentId={}, size={}", uploadId, session.getDocumentId(), size);
+
+            String safeId = fileStorageService.sanitizeDocumentId(session.getDocumentId());
+            return new FileStorageService.SavedFile(safeId + "." + session.getFileType(), size, actual);
+        } catch (RuntimeException e) {
+            if (sessions.containsKey(uploadId)) {
+                // 未提交成功，可以补传分块后重新提交
+                session.endCommit();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 取消上传，删除已上传的内容
+     *
+     * @param uploadId 上传 ID
+     */
+    public void abort(String uploadId) {
+        abort(get(uploadId));
+        log.info("上传已取消: uploadId={}", uploadId);
+    }
+
+    /**
+     * 获取分块上传状态
+     *
+     * @return 统计: sessions, maxSessions, committed, expired
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("sessions", (long) sessions.size());
+        stats.put("maxSessions", (long) config.getMaxSessions());
+        stats.put("committed", committed.get());
+        stats.put("expired", expired.get());
+        return stats;
+    }
+
+    private void abort(Session session) {
+        if (sessions.remove(session.getUploadId(), session)) {
+            fileStorageService.discardTempFile(session.getTempPath());
+        }
+    }
+
+    /**
+     * 清理空闲超时的会话（正在写入或提交的会话不清理）
+     */
+    private void cleanup() {
+        long deadline = System.currentTimeMillis() - config.getSessionTtl() * 1000L;
+        for (Session session : sessions.values()) {
+            if (session.expireIfIdleSince(deadline)) {
+                abort(session);
+                expired.incrementAndGet();
+                log.info("上传会话已过期: uploadId={}, documentId={}, 已收到 {}/{} 块", session.getUploadId(),
+                        session.getDocumentId(), session.getChunkCount() - session.missingCount(),
+                        session.getChunkCount());
+            }
+        }
+    }
+
+    /**
+     * 将输入流写入文件的 [offset, offset + length) 区间，超出时中止
+     *
+     * @return 写入的字节数
+     */
+    private static long copy(InputStream inputStream, FileChannel channel, long offset, long length)
+            throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        long position = offset;
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            if (position - offset + read > length) {
+                throw new InvalidFileException("分块大小超过 " + length);
+            }
+            byteBuffer.clear().limit(read);
+            while (byteBuffer.hasRemaining()) {
+                position += channel.write(byteBuffer, position);
+            }
+        }
+        return position - offset;
+    }
+
+    /**
+     * 上传会话
+     */
+    @Getter
+    public static class Session {
+        private final String uploadId;
+        private final String documentId;
+        private final String fileType;
+        private final long size;
+        private final int chunkSize;
+        private final int chunkCount;
+
+        /**
+         * 创建时提供的 SHA-256，未提供时为 null
+         */
+        private final String sha256;
+
+        private final Path tempPath;
+
+        /**
+         * 已收到的分块（以下状态由 this 保护）
+         */
+        @Getter(AccessLevel.NONE)
+        private final BitSet received;
+
+        @Getter(AccessLevel.NONE)
+        private int writers;
+
+        @Getter(AccessLevel.NONE)
+        private boolean committing;
+
+        @Getter(AccessLevel.NONE)
+        private boolean expired;
+
+        @Getter(AccessLevel.NONE)
+        private long lastActivity = System.currentTimeMillis();
+
+        Session(String uploadId, String documentId, String fileType, long size, int chunkSize,
+                String sha256, Path tempPath) {
+            this.uploadId = uploadId;
+            this.documentId = documentId;
+            this.fileType = fileType;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.chunkCount = size == 0 ? 0 : (int) ((size + chunkSize - 1) / chunkSize);
+            this.sha256 = sha256;
+            this.tempPath = tempPath;
+            this.received = new BitSet(chunkCount);
+        }
+
+        /**
+         * 已收到的分块序号
+         */
+        public synchronized List<Integer> receivedChunks() {
+            List<Integer> chunks = new ArrayList<>(received.cardinality());
+            for (int i = received.nextSetBit(0); i >= 0; i = received.nextSetBit(i + 1)) {
+                chunks.add(i);
+            }
+            return chunks;
+        }
+
+        /**
+         * 未收到的分块序号
+         *
+         * @param limit 最多返回条数
+         */
+        public synchronized List<Integer> missingChunks(int limit) {
+            List<Integer> chunks = new ArrayList<>();
+            for (int i = received.nextClearBit(0); i < chunkCount && chunks.size() < limit;
+                 i = received.nextClearBit(i + 1)) {
+                chunks.add(i);
+            }
+            return chunks;
+        }
+
+        /**
+         * 未收到的分块数
+         */
+        public synchronized int missingCount() {
+            return chunkCount - received.cardinality();
+        }
+
+        /**
+         * 开始写入分块（重传已收到的分块时，写完之前视为未收到）
+         */
+        synchronized void beginWrite(int index) {
+            checkOpen();
+            writers++;
+            received.clear(index);
+            lastActivity = System.currentTimeMillis();
+        }
+
+        synchronized void endWrite(int index, boolean completed) {
+            writers--;
+            if (completed) {
+                received.set(index);
+            }
+            lastActivity = System.currentTimeMillis();
+        }
+
+        /**
+         * 开始提交，之后不再接受分块
+         */
+        synchronized void beginCommit() {
+            checkOpen();
+            if (writers > 0) {
+                throw new InvalidFileException("还有分块正在上传: " + uploadId);
+            }
+            committing = true;
+        }
+
+        synchronized void endCommit() {
+            committing = false;
+            lastActivity = System.currentTimeMillis();
+        }
+
+        /**
+         * 空闲超时时标记为过期
+         *
+         * @return true 如果已过期
+         */
+        synchronized boolean expireIfIdleSince(long deadline) {
+            if (writers == 0 && !committing && lastActivity < deadline) {
+                expired = true;
+            }
+            return expired;
+        }
+
+        private void checkOpen() {
+            if (expired) {
+                throw new FileNotFoundException("上传会话不存在或已过期: " + uploadId);
+            }
+            if (committing) {
+                throw new InvalidFileException("上传会话正在提交: " + uploadId);
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.dto.DocumentConfigDTO;
+import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 编辑器配置缓存
+ *
+ * 缓存已签名的编辑器配置，同一用户重复打开未修改的文档时不再重新构建和签名
+ *
+ * 缓存键包含文件内容哈希和最后修改时间，文档保存后自动使用新配置；
+ * 有效期不超过 JWT 过期时间的一半，返回的 Token 始终还有足够的有效期
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class DocumentConfigCache {
+
+    private final OnlyOfficeProperties properties;
+
+    /**
+     * 按访问顺序排列，超出容量时淘汰最久未使用的配置
+     */
+    private final LinkedHashMap<Key, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private long ttlMillis;
+
+    public DocumentConfigCache(OnlyOfficeProperties properties) {
+        this.properties = properties;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > properties.getConfigCache().getMaxEntries()) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 计算有效期
+     */
+    @PostConstruct
+    public void init() {
+        int ttl = properties.getConfigCache().getTtl();
+        int maxTtl = properties.getJwt().getExpiresIn() / 2;
+        if (ttl > maxTtl) {
+            log.warn("编辑器配置缓存有效期 {}s 超过 JWT 过期时间的一半，调整为 {}s", ttl, maxTtl);
+            ttl = maxTtl;
+        }
+        this.ttlMillis = ttl * 1000L;
+        log.info("编辑器配置缓存: enabled={}, maxEntries={}, ttl={}s",
+                properties.getConfigCache().isEnabled(), properties.getConfigCache().getMaxEntries(), ttl);
+    }
+
+    /**
+     * 获取配置，未命中或已过期时构建并缓存
+     *
+     * @param key 缓存键
+     * @param loader 构建并签名配置
+     * @return 缓存条目
+     */
+    public Entry get(Key key, Supplier<DocumentConfigDTO> loader) {
+        if (!properties.getConfigCache().isEnabled() || ttlMillis <= 0) {
+            return build(key, loader);
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    hits.incrementAndGet();
+                    return entry;
+                }
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+        }
+
+        // 在锁外构建，并发未命中时可能重复构建，结果等价
+        misses.incrementAndGet();
+        Entry entry = new Entry(loader.get(), key.getLastModified(), now + ttlMillis);
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * 构建配置，不查询也不放入缓存（每次都不同的配置）
+     *
+     * @param key 缓存键
+     * @param loader 构建并签名配置
+     * @return 条目
+     */
+    public Entry build(Key key, Supplier<DocumentConfigDTO> loader) {
+        return new Entry(loader.get(), key.getLastModified(), 0);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 获取缓存统计
+     *
+     * @return 统计: size（条数）, hits（命中）, misses（未命中）, evictions（淘汰和过期）
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<>();
+        synchronized (this) {
+            stats.put("size", (long) entries.size());
+        }
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+
+    /**
+     * 缓存键
+     */
+    @Value
+    public static class Key {
+        String documentId;
+        String fileType;
+        long lastModified;
+        String contentHash;
+        String userId;
+        String userName;
+        String mode;
+    }
+
+    /**
+     * 缓存条目
+     */
+    @Getter
+    public static class Entry {
+        /**
+         * 已签名的配置（只读，不要修改）
+         */
+        private final DocumentConfigDTO config;
+
+        /**
+         * 文件最后修改时间
+         */
+        private final long lastModified;
+
+        /**
+         * 实体标签，由配置签名生成，重新签名后随之改变
+         */
+        private final String etag;
+
+        private final long expiresAt;
+
+        Entry(DocumentConfigDTO config, long lastModified, long expiresAt) {
+            this.config = config;
+            this.lastModified = lastModified;
+            this.expiresAt = expiresAt;
+            String token = config.getToken();
+            this.etag = "\"" + token.substring(token.lastIndexOf('.') + 1) + "\"";
+        }
+    }
+}
@@ -0,0 +1,540 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.exception.DocumentException;
+import com.example.onlyoffice.exception.InvalidFileException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 文档下载器
+ *
+ * 从文档服务器下载编辑后的文档到本地文件：
+ * 第一个请求即请求整个文件（从 206 响应得到总大小，不另发探测请求），
+ * 支持 Range 的服务器在网络中断后从断点续传，大文件在收到第一个响应后将其余部分拆分为多个区段并行下载，
+ * 各区段按位置写入预分配的文件；读取超时根据观测到的吞吐量自适应调整
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class DocumentDownloader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+|\\*)");
+
+    /**
+     * 吞吐量平滑系数
+     */
+    private static final double THROUGHPUT_ALPHA = 0.3;
+
+    /**
+     * 自适应读取超时：按当前吞吐量接收 1MB 所需时间的倍数
+     */
+    private static final long TIMEOUT_PROBE_BYTES = 1024 * 1024;
+    private static final int TIMEOUT_FACTOR = 4;
+
+    private final OnlyOfficeProperties properties;
+    private final CloseableHttpClient httpClient;
+
+    /**
+     * 客户端的默认请求配置（连接保活等），每个请求在此基础上调整读取超时
+     */
+    private final RequestConfig defaultRequestConfig;
+
+    private ExecutorService segmentExecutor;
+
+    /**
+     * 平滑后的下载吞吐量（字节/毫秒），0 表示尚无观测
+     */
+    private volatile double throughput;
+
+    public DocumentDownloader(OnlyOfficeProperties properties, CloseableHttpClient httpClient,
+                              RequestConfig defaultRequestConfig) {
+        this.properties = properties;
+        this.httpClient = httpClient;
+        this.defaultRequestConfig = defaultRequestConfig;
+    }
+
+    /**
+     * 初始化并行下载线程池
+     */
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.segmentExecutor = Executors.newFixedThreadPool(Math.max(1, download().getThreads()), r -> {
+            Thread thread = new Thread(r, "document-download-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 关闭并行下载线程池
+     */
+    @PreDestroy
+    public void shutdown() {
+        segmentExecutor.shutdownNow();
+    }
+
+    /**
+     * 下载文档到指定文件
+     *
+     * @param url 文档地址
+     * @param target 目标文件（已存在的内容会被覆盖）
+     * @param maxSize 最大文件大小，超过时中止
+     * @return 下载的字节数
+     */
+    public long download(String url, Path target, long maxSize) throws IOException {
+        return download(url, target, maxSize, null);
+    }
+
+    /**
+     * 下载文档到指定文件，同时计算内容摘要
+     *
+     * 顺序下载（含断点续传）时边写入边计算；并行下载的区段乱序到达，完成后读取文件计算
+     *
+     * @param url 文档地址
+     * @param target 目标文件（已存在的内容会被覆盖）
+     * @param maxSize 最大文件大小，超过时中止
+     * @param digest 内容摘要（先重置），不需要时传 null
+     * @return 下载的字节数
+     */
+    public long download(String url, Path target, long maxSize, MessageDigest digest) throws IOException {
+        long startTime = System.currentTimeMillis();
+        List<Future<?>> segments = new ArrayList<>();
+
+        try (RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw");
+             FileChannel channel = file.getChannel()) {
+            First first = first(url, file, channel, maxSize, digest, segments);
+            long total = first.total;
+
+            // 第一个请求中断时从已写入的位置续传
+            if (first.position[0] <= first.end) {
+                if (first.parallel) {
+                    downloadRange(url, channel, first.position[0], first.end, first.validator, total, null);
+                } else {
+                    downloadRange(url, channel, first.position[0], first.end, first.validator, maxSize, digest);
+                }
+            }
+            await(segments);
+            if (first.parallel && digest != null) {
+                digestFile(channel, digest);
+            }
+
+            long size = channel.size();
+            if (total >= 0 && size != total) {
+                throw new IOException("下载不完整: " + size + " / " + total);
+            }
+            log.debug("文档下载完成: url={}, size={}, elapsed={}ms", url, size, System.currentTimeMillis() - startTime);
+            return size;
+        } finally {
+            for (Future<?> future : segments) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * 第一个请求：请求整个文件（bytes=0-），不另发探测请求
+     *
+     * 服务器返回 206 时从 Content-Range 得到总大小和 If-Range 校验值：小文件直接接收响应体；
+     * 超过并行阈值时立即并行请求其余区段，本响应只接收第一个区段后断开。
+     * 返回 200 说明不支持 Range，直接保存整个响应
+     *
+     * 收到 206 响应头后传输中断时返回，由调用方从已写入的位置续传；其他失败重新请求
+     *
+     * @param segments 已提交的其余区段（调用方等待完成，失败时取消）
+     */
+    private First first(String url, RandomAccessFile file, FileChannel channel, long maxSize, MessageDigest digest,
+                        List<Future<?>> segments) throws IOException {
+        int maxRetries = download().getMaxRetries();
+        for (int attempt = 0; ; attempt++) {
+            First first = new First();
+            HttpGet request = new HttpGet(url);
+            request.setConfig(requestConfig());
+            request.setHeader(HttpHeaders.RANGE, "bytes=0-");
+
+            long requestStart = System.currentTimeMillis();
+            try {
+                httpClient.execute(request, response -> {
+                    int statusCode = response.getCode();
+                    if (statusCode == 416) {
+                        // 空文件没有可请求的区段
+                        EntityUtils.consume(response.getEntity());
+                        channel.truncate(0);
+                        first.total = 0;
+                        return null;
+                    }
+                    if (statusCode != 200 && statusCode != 206) {
+                        checkStatus(statusCode);
+                    }
+
+                    channel.truncate(0);
+                    if (digest != null) {
+                        digest.reset();
+                    }
+                    if (statusCode == 200) {
+                        // 不支持 Range：直接保存整个响应
+                        HttpEntity entity = response.getEntity();
+                        long contentLength = entity != null ? entity.getContentLength() : -1;
+                        if (contentLength > maxSize) {
+                            throw new InvalidFileException("文件大小超过限制: " + contentLength + " > " + maxSize);
+                        }
+                        copy(response, channel, first.position, maxSize, digest, null);
+                        first.total = contentLength >= 0 ? contentLength : first.position[0];
+                        return null;
+                    }
+
+                    long[] range = parseContentRange(response);
+                    if (range == null || range[0] != 0 || range[2] < 0) {
+                        throw new DocumentException("无法获取文档大小: " + url);
+                    }
+                    long total = range[2];
+                    if (total > maxSize) {
+                        throw new InvalidFileException("文件大小超过限制: " + total + " > " + maxSize);
+                    }
+                    first.validator = validator(response);
+                    first.ranged = true;
+
+                    OnlyOfficeProperties.Download config = download();
+                    int count = config.getSegments();
+                    if (total >= config.getParallelThreshold() && count > 1) {
+                        // 预分配文件，其余区段按位置并行写入，本响应只接收第一个区段
+                        long segmentSize = (total + count - 1) / count;
+                        file.setLength(total);
+                        first.parallel = true;
+                        first.end = Math.min(total, segmentSize) - 1;
+                        first.total = total;
+                        submitSegments(url, channel, total, segmentSize, first.validator, segments);
+                        copy(response, channel, first.position, first.end + 1, null, request);
+                    } else {
+                        first.end = total - 1;
+                        first.total = total;
+                        copy(response, channel, first.position, maxSize, digest, null);
+                    }
+                    return null;
+                });
+                updateThroughput(first.position[0], System.currentTimeMillis() - requestStart);
+                return first;
+            } catch (IOException e) {
+                if (first.ranged) {
+                    log.debug("下载中断，已写入 {} 字节，从断点续传", first.position[0]);
+                    return first;
+                }
+                if (attempt >= maxRetries) {
+                    throw e;
+                }
+                backoff(url, attempt, e);
+            }
+        }
+    }
+
+    /**
+     * 提交第一个区段之后的各区段
+     */
+    private void submitSegments(String url, FileChannel channel, long total, long segmentSize, String validator,
+                                List<Future<?>> segments) {
+        log.debug("并行下载: url={}, size={}, segmentSize={}", url, total, segmentSize);
+        for (long start = segmentSize; start < total; start += segmentSize) {
+            long rangeStart = start;
+            long end = Math.min(total, start + segmentSize) - 1;
+            segments.add(segmentExecutor.submit(() -> {
+                downloadRange(url, channel, rangeStart, end, validator, total, null);
+                return null;
+            }));
+        }
+    }
+
+    /**
+     * 等待并行区段完成
+     */
+    private static void await(List<Future<?>> segments) throws IOException {
+        try {
+            for (Future<?> future : segments) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("下载被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * 下载 [start, end] 区段，失败时从已写入的位置续传
+     *
+     * @param digest 从 start 起顺序写入的内容摘要（续传从已写入的位置继续，摘要保持一致），不需要时传 null
+     */
+    private void downloadRange(String url, FileChannel channel, long start, long end, String validator, long maxSize,
+                               MessageDigest digest) throws IOException {
+        int maxRetries = download().getMaxRetries();
+        long[] position = {start};
+
+        for (int attempt = 0; ; attempt++) {
+            if (position[0] > end) {
+                return;
+            }
+
+            long rangeStart = position[0];
+            HttpGet request = new HttpGet(url);
+            request.setConfig(requestConfig());
+            request.setHeader(HttpHeaders.RANGE, "bytes=" + rangeStart + "-" + end);
+            if (validator != null) {
+                // 文件已变化时服务器返回 200，避免拼接出不一致的内容
+                request.setHeader(HttpHeaders.IF_RANGE, validator);
+            }
+
+            long requestStart = System.currentTimeMillis();
+            try {
+                httpClient.execute(request, response -> {
+                    int statusCode = response.getCode();
+                    if (statusCode != 206) {
+                        if (statusCode == 200) {
+                            throw new DocumentException("文档在下载过程中发生变化: " + url);
+                        }
+                        checkStatus(statusCode);
+                    }
+                    long[] range = parseContentRange(response);
+                    if (range == null || range[0] != rangeStart) {
+                        throw new DocumentException("服务器返回的区段不匹配: " + url);
+                    }
+                    copy(response, channel, position, maxSize, digest, null);
+                    return null;
+                });
+                updateThroughput(position[0] - rangeStart, System.currentTimeMillis() - requestStart);
+                return;
+            } catch (IOException e) {
+                // 本次请求有进展时重新计算重试次数，只有连续无进展的失败才会耗尽重试
+                if (position[0] > rangeStart) {
+                    attempt = 0;
+                } else if (attempt >= maxRetries) {
+                    throw e;
+                }
+                log.debug("区段下载中断，已写入 {} 字节，从 {} 续传", position[0] - start, position[0]);
+                backoff(url, attempt, e);
+            }
+        }
+    }
+
+    /**
+     * 将响应体按位置写入文件
+     *
+     * @param position 写入位置，随写入进度更新（中断后据此续传）
+     * @param limit 写入位置的上限（不含）：cutOff 为 null 时超过上限视为文件过大
+     * @param digest 按已写入的字节更新的摘要，不需要时传 null
+     * @param cutOff 写到上限后取消该请求、断开连接（不读取剩余内容），不需要时传 null
+     */
+    private void copy(ClassicHttpResponse response, FileChannel channel, long[] position, long limit,
+                      MessageDigest digest, Cancellable cutOff) throws IOException {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            throw new DocumentException("下载文档失败，响应内容为空");
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        try (InputStream in = entity.getContent()) {
+            while (true) {
+                int length = buffer.length;
+                if (cutOff != null) {
+                    long remaining = limit - position[0];
+                    if (remaining <= 0) {
+                        // 关闭响应流会读完剩余内容，先断开连接
+                        cutOff.cancel();
+                        return;
+                    }
+                    length = (int) Math.min(length, remaining);
+                }
+                int read = in.read(buffer, 0, length);
+                if (read == -1) {
+                    return;
+                }
+                if (position[0] + read > limit) {
+                    throw new InvalidFileException("文件大小超过限制: > " + limit);
+                }
+                byteBuffer.clear().limit(read);
+                while (byteBuffer.hasRemaining()) {
+                    int offset = byteBuffer.position();
+                    int written = channel.write(byteBuffer, position[0]);
+                    if (digest != null) {
+                        digest.update(buffer, offset, written);
+                    }
+                    position[0] += written;
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取已下载的文件计算摘要（并行下载完成后，文件内容仍在页缓存中）
+     */
+    private static void digestFile(FileChannel channel, MessageDigest digest) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long position = 0;
+        int read;
+        while ((read = channel.read(buffer, position)) != -1) {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+            position += read;
+        }
+    }
+
+    /**
+     * 按当前吞吐量计算请求配置（只调整读取超时）
+     */
+    private RequestConfig requestConfig() {
+        OnlyOfficeProperties.DocumentServer config = properties.getDocumentServer();
+        long readTimeout = config.getReadTimeout();
+
+        double current = throughput;
+        if (current > 0) {
+            long expected = (long) (TIMEOUT_PROBE_BYTES / current) * TIMEOUT_FACTOR;
+            readTimeout = Math.max(download().getMinReadTimeout(), Math.min(readTimeout, expected));
+        }
+
+        return RequestConfig.copy(defaultRequestConfig)
+                .setResponseTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    private void updateThroughput(long bytes, long elapsedMillis) {
+        // 太小的样本无法反映吞吐量
+        if (bytes < TIMEOUT_PROBE_BYTES) {
+            return;
+        }
+        double sample = (double) bytes / Math.max(1, elapsedMillis);
+        double current = throughput;
+        throughput = current <= 0 ? sample : current * (1 - THROUGHPUT_ALPHA) + sample * THROUGHPUT_ALPHA;
+    }
+
+    private void backoff(String url, int attempt, IOException e) throws IOException {
+        long delay = (long) download().getRetryBackoff() * (attempt + 1);
+        log.warn("下载失败，{}ms 后重试: url={}, attempt={}, error={}", delay, url, attempt + 1, e.getMessage());
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /**
+     * 5xx 视为可重试的 IO 错误，其他非成功状态直接失败
+     */
+    private static void checkStatus(int statusCode) throws IOException {
+        if (statusCode >= 500) {
+            throw new IOException("文档服务器错误，状态码: " + statusCode);
+        }
+        throw new DocumentException("下载文档失败，状态码: " + statusCode);
+    }
+
+    /**
+     * 解析 Content-Range
+     *
+     * @return [start, end, total]（total 未知时为 -1），无法解析时返回 null
+     */
+    private static long[] parseContentRange(ClassicHttpResponse response) {
+        Header header = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+        if (header == null) {
+            return null;
+        }
+        Matcher matcher = CONTENT_RANGE.matcher(header.getValue());
+        if (!matcher.matches()) {
+            return null;
+        }
+        long total = "*".equals(matcher.group(3)) ? -1 : Long.parseLong(matcher.group(3));
+        return new long[]{Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)), total};
+    }
+
+    /**
+     * If-Range 使用的校验值：优先强 ETag，其次 Last-Modified
+     */
+    private static String validator(ClassicHttpResponse response) {
+        Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+        if (etag != null && !etag.getValue().startsWith("W/")) {
+            return etag.getValue();
+        }
+        Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+        return lastModified != null ? lastModified.getValue() : null;
+    }
+
+    private OnlyOfficeProperties.Download download() {
+        return properties.getDocumentServer().getDownload();
+    }
+
+    /**
+     * 第一个请求的结果
+     */
+    private static class First {
+        /**
+         * 文件总大小，未知时为 -1
+         */
+        private long total = -1;
+
+        /**
+         * 本请求负责的最后一个字节（续传到此为止），不需要续传时为 -1
+         */
+        private long end = -1;
+
+        /**
+         * 已写入的位置
+         */
+        private final long[] position = {0};
+
+        /**
+         * If-Range 校验值
+         */
+        private String validator;
+
+        /**
+         * 服务器返回了 206（中断后可以续传）
+         */
+        private boolean ranged;
+
+        /**
+         * 其余区段已并行下载，本请求只负责第一个区段
+         */
+        private boolean parallel;
+    }
+}
@@ -0,0 +1,557 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.exception.FileStorageException;
+import com.example.onlyoffice.exception.InvalidFileException;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * 文档元数据索引
+ *
+ * 在内存中保存存储目录中文档的（ID、类型、大小、修改时间、内容哈希），查询文档时不再访问磁盘
+ *
+ * 启动时扫描目录建立索引，之后由 {@link FileStorageService} 的写操作更新，
+ * 外部对目录的修改通过 WatchService 同步
+ *
+ * 同时按名称、修改时间、大小维护排序视图，分页列表直接从游标位置开始遍历
+ *
+ * 索引中不存在的文件会检查一次磁盘（WatchService 在网络文件系统上可能收不到事件），
+ * 确认不存在后在一段时间内直接返回不存在
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Slf4j
+public class DocumentIndex {
+
+    private final StorageLayout layout;
+    private final OnlyOfficeProperties.Index config;
+
+    /**
+     * 文件名 -> 元数据
+     */
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 按名称、修改时间、大小排序的视图（用于分页列表）
+     */
+    private final Map<SortField, ConcurrentSkipListSet<Entry>> sorted = new EnumMap<>(SortField.class);
+
+    /**
+     * 确认不存在的文件名 -> 过期时间
+     */
+    private final ConcurrentHashMap<String, Long> missing = new ConcurrentHashMap<>();
+
+    private WatchService watchService;
+    private Thread watchThread;
+
+    public DocumentIndex(StorageLayout layout, OnlyOfficeProperties.Index config) {
+        this.layout = layout;
+        this.config = config;
+        for (SortField field : SortField.values()) {
+            sorted.put(field, new ConcurrentSkipListSet<>(field.comparator));
+        }
+    }
+
+    /**
+     * 扫描目录建立索引，并开始监听目录变化
+     */
+    public void start() {
+        if (config.isWatch()) {
+            startWatch();
+        }
+        // 先开始监听再扫描，扫描期间的外部修改不会遗漏
+        rescan();
+        log.info("文档索引建立完成: {} 个文件, watch={}", entries.size(), watchService != null);
+    }
+
+    /**
+     * 停止监听
+     */
+    public void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("关闭目录监听失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 查询文件
+     *
+     * @param filename 文件名（文档 ID + "." + 类型）
+     * @return 元数据，不存在时返回 null
+     */
+    public Entry get(String filename) {
+        Entry entry = entries.get(filename);
+        if (entry != null) {
+            return entry;
+        }
+
+        Long expiresAt = missing.get(filename);
+        if (expiresAt != null && expiresAt > System.currentTimeMillis()) {
+            return null;
+        }
+
+        // 索引中没有，检查磁盘
+        entry = refresh(filename);
+        if (entry == null) {
+            if (missing.size() >= config.getNegativeCacheSize()) {
+                missing.clear();
+            }
+            missing.put(filename, System.currentTimeMillis() + config.getNegativeCacheTtl() * 1000L);
+        }
+        return entry;
+    }
+
+    /**
+     * 重新读取文件的元数据（文件写入或删除后调用）
+     *
+     * @param filename 文件名
+     * @return 最新的元数据，文件不存在时返回 null
+     */
+    public Entry refresh(String filename) {
+        Entry entry = refresh(filename, layout.pathOf(filename));
+        if (entry == null && layout.isSharded()) {
+            // 尚未迁移的文件
+            entry = refresh(filename, layout.legacyPathOf(filename));
+        }
+        if (entry == null) {
+            remove(filename);
+        }
+        return entry;
+    }
+
+    private Entry refresh(String filename, Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (attributes.isRegularFile()) {
+                return put(filename, path, attributes);
+            }
+        } catch (NoSuchFileException e) {
+            // 文件不存在
+        } catch (IOException e) {
+            log.warn("读取文件属性失败: {}, {}", path, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 记录文档内容的 SHA-256
+     *
+     * 只在索引中仍是同一版本（路径、大小、修改时间相同）时记录，之后同一版本的刷新会保留
+     *
+     * @param entry 计算哈希时的元数据
+     * @param sha256 内容的 SHA-256
+     * @return 更新后的元数据
+     */
+    public Entry attachHash(Entry entry, String sha256) {
+        Entry updated = entry.withSha256(sha256);
+        Entry[] result = {updated};
+        entries.computeIfPresent(entry.getFilename(), (key, current) -> {
+            if (!current.isSameVersion(entry)) {
+                result[0] = current;
+                return current;
+            }
+            // 排序字段不变，视图中的旧条目与新条目相等
+            for (ConcurrentSkipListSet<Entry> view : sorted.values()) {
+                view.remove(current);
+                view.add(updated);
+            }
+            return updated;
+        });
+        return result[0];
+    }
+
+    /**
+     * 移除文件
+     *
+     * @param filename 文件名
+     */
+    public void remove(String filename) {
+        entries.computeIfPresent(filename, (key, previous) -> {
+            unlink(previous);
+            return null;
+        });
+    }
+
+    /**
+     * 按指定顺序列出文档
+     *
+     * 直接遍历排序视图，不复制整个列表；遍历期间的修改可能可见，也可能不可见
+     *
+     * @param sort 排序字段
+     * @param descending 是否倒序
+     * @param cursor 上一页最后一条的游标（{@link #cursorOf}），null 表示从头开始
+     * @return 文档流
+     */
+    public Stream<Entry> list(SortField sort, boolean descending, String cursor) {
+        NavigableSet<Entry> view = sorted.get(sort);
+        if (cursor != null) {
+            Entry position = decodeCursor(sort, cursor);
+            view = descending ? view.headSet(position, false) : view.tailSet(position, false);
+        }
+        if (descending) {
+            view = view.descendingSet();
+        }
+        return view.stream();
+    }
+
+    /**
+     * 生成指向该文档之后位置的游标
+     *
+     * @param entry 当前页最后一条
+     * @param sort 排序字段
+     * @return 游标（Base64Url 编码）
+     */
+    public String cursorOf(Entry entry, SortField sort) {
+        String position;
+        switch (sort) {
+            case MTIME:
+                position = entry.getLastModified() + ":" + entry.getFilename();
+                break;
+            case SIZE:
+                position = entry.getSize() + ":" + entry.getFilename();
+                break;
+            default:
+                position = entry.getFilename();
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 获取索引状态
+     *
+     * @return 统计: size（文件数）, missing（不存在缓存条数）
+     */
+    public Map<String, Integer> getStats() {
+        Map<String, Integer> stats = new HashMap<>();
+        stats.put("size", entries.size());
+        stats.put("missing", missing.size());
+        return stats;
+    }
+
+    /**
+     * 重新扫描整个目录
+     *
+     * 扫描开始后更新过的条目不会被移除
+     */
+    public void rescan() {
+        long scanStart = System.nanoTime();
+        Set<String> seen = new HashSet<>();
+        try {
+            // 先扫描根目录（sharded 布局下为未迁移的文件），分片目录中的文件优先
+            scanDirectory(layout.getRoot(), seen);
+            if (layout.isSharded()) {
+                for (Path shard : shardDirectories()) {
+                    scanDirectory(shard, seen);
+                }
+            }
+        } catch (IOException e) {
+            throw new FileStorageException("扫描存储目录失败: " + layout.getRoot(), e);
+        }
+        for (Entry entry : entries.values()) {
+            if (!seen.contains(entry.getFilename()) && entry.getIndexedAt() - scanStart < 0) {
+                entries.computeIfPresent(entry.getFilename(), (key, current) -> {
+                    if (current.getIndexedAt() - scanStart >= 0) {
+                        return current;
+                    }
+                    unlink(current);
+                    return null;
+                });
+            }
+        }
+    }
+
+    /**
+     * 所有第二级分片目录
+     *
+     * @return 分片目录列表
+     */
+    public List<Path> shardDirectories() throws IOException {
+        List<Path> shards = new ArrayList<>();
+        try (DirectoryStream<Path> first = Files.newDirectoryStream(layout.getRoot(), this::isShardDirectory)) {
+            for (Path level1 : first) {
+                try (DirectoryStream<Path> second = Files.newDirectoryStream(level1, this::isShardDirectory)) {
+                    for (Path level2 : second) {
+                        shards.add(level2);
+                    }
+                }
+            }
+        }
+        return shards;
+    }
+
+    private boolean isShardDirectory(Path path) {
+        return StorageLayout.isShardName(path.getFileName().toString()) && Files.isDirectory(path);
+    }
+
+    private void scanDirectory(Path directory, Set<String> seen) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                String filename = path.getFileName().toString();
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (attributes.isRegularFile()) {
+                        put(filename, path, attributes);
+                        seen.add(filename);
+                    }
+                } catch (NoSuchFileException e) {
+                    // 扫描期间被删除
+                }
+            }
+        }
+    }
+
+    /**
+     * 解析游标
+     */
+    private Entry decodeCursor(SortField sort, String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (sort == SortField.NAME) {
+                return new Entry(position, null, null, null, 0, 0, 0, null);
+            }
+            int separator = position.indexOf(':');
+            long value = Long.parseLong(position.substring(0, separator));
+            String filename = position.substring(separator + 1);
+            return sort == SortField.MTIME
+                    ? new Entry(filename, null, null, null, 0, value, 0, null)
+                    : new Entry(filename, null, null, null, value, 0, 0, null);
+        } catch (RuntimeException e) {
+            throw new InvalidFileException("无效的分页游标: " + cursor);
+        }
+    }
+
+    private Entry put(String filename, Path path, BasicFileAttributes attributes) {
+        int dotIndex = filename.lastIndexOf('.');
+        String id = dotIndex > 0 ? filename.substring(0, dotIndex) : filename;
+        String fileType = dotIndex > 0 ? filename.substring(dotIndex + 1) : "";
+        Entry scanned = new Entry(filename, id, fileType, path, attributes.size(),
+                attributes.lastModifiedTime().toMillis(), System.nanoTime(), null);
+        Entry[] result = {scanned};
+        entries.compute(filename, (key, previous) -> {
+            Entry entry = scanned;
+            if (previous != null) {
+                unlink(previous);
+                if (previous.getSha256() != null && previous.isSameVersion(scanned)) {
+                    // 同一版本的重复刷新（如目录监听事件），保留已知的内容哈希
+                    entry = scanned.withSha256(previous.getSha256());
+                }
+            }
+            for (ConcurrentSkipListSet<Entry> view : sorted.values()) {
+                view.add(entry);
+            }
+            result[0] = entry;
+            return entry;
+        });
+        missing.remove(filename);
+        return result[0];
+    }
+
+    /**
+     * 从排序视图中移除（在 entries 的 compute 中调用，同一文件名的更新互斥）
+     */
+    private void unlink(Entry entry) {
+        for (ConcurrentSkipListSet<Entry> view : sorted.values()) {
+            view.remove(entry);
+        }
+    }
+
+    private void startWatch() {
+        Path root = layout.getRoot();
+        try {
+            this.watchService = root.getFileSystem().newWatchService();
+            register(root);
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("无法监听存储目录，外部修改不会同步到索引: {}", e.getMessage());
+            this.watchService = null;
+            return;
+        }
+
+        if (layout.isSharded()) {
+            try (DirectoryStream<Path> first = Files.newDirectoryStream(root, this::isShardDirectory)) {
+                for (Path level1 : first) {
+                    registerShard(level1);
+                }
+            } catch (IOException e) {
+                log.warn("监听分片目录失败，部分外部修改不会同步到索引: {}", e.getMessage());
+            }
+        }
+
+        this.watchThread = new Thread(this::watchLoop, "document-index-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    log.warn("目录监听事件溢出，重新扫描存储目录");
+                    try {
+                        rescan();
+                    } catch (FileStorageException e) {
+                        log.error("重新扫描存储目录失败: {}", e.getMessage());
+                    }
+                    continue;
+                }
+                Path path = ((Path) key.watchable()).resolve((Path) event.context());
+                if (layout.isSharded() && event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                        && isShardDirectory(path)) {
+                    // 新建的分片目录
+                    try {
+                        registerShard(path);
+                    } catch (IOException e) {
+                        log.warn("监听分片目录失败: {}, {}", path, e.getMessage());
+                    }
+                    continue;
+                }
+                refresh(event.context().toString());
+            }
+
+            if (!key.reset()) {
+                log.warn("存储目录监听已失效");
+                return;
+            }
+        }
+    }
+
+    private void register(Path directory) throws IOException {
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * 监听分片目录（第一级目录同时监听其下的第二级目录）
+     */
+    private void registerShard(Path shard) throws IOException {
+        register(shard);
+        if (shard.getParent().equals(layout.getRoot())) {
+            try (DirectoryStream<Path> second = Files.newDirectoryStream(shard, this::isShardDirectory)) {
+                for (Path level2 : second) {
+                    register(level2);
+                }
+            }
+        }
+    }
+
+    /**
+     * 排序字段，相同时按文件名排序
+     */
+    public enum SortField {
+        /**
+         * 文件名
+         */
+        NAME(Comparator.comparing(Entry::getFilename)),
+
+        /**
+         * 最后修改时间
+         */
+        MTIME(Comparator.comparingLong(Entry::getLastModified).thenComparing(Entry::getFilename)),
+
+        /**
+         * 文件大小
+         */
+        SIZE(Comparator.comparingLong(Entry::getSize).thenComparing(Entry::getFilename));
+
+        private final Comparator<Entry> comparator;
+
+        SortField(Comparator<Entry> comparator) {
+            this.comparator = comparator;
+        }
+    }
+
+    /**
+     * 文档元数据
+     */
+    @Value
+    public static class Entry {
+        /**
+         * 文件名
+         */
+        String filename;
+
+        /**
+         * 文档 ID（不含扩展名）
+         */
+        String id;
+
+        /**
+         * 文件类型
+         */
+        String fileType;
+
+        /**
+         * 文件路径
+         */
+        Path path;
+
+        /**
+         * 文件大小（字节）
+         */
+        long size;
+
+        /**
+         * 最后修改时间（毫秒）
+         */
+        long lastModified;
+
+        /**
+         * 写入索引的时间（System.nanoTime）
+         */
+        long indexedAt;
+
+        /**
+         * 内容的 SHA-256（十六进制），尚未读取时为 null
+         */
+        String sha256;
+
+        Entry withSha256(String sha256) {
+            return new Entry(filename, id, fileType, path, size, lastModified, indexedAt, sha256);
+        }
+
+        /**
+         * 是否是同一文件的同一版本
+         */
+        boolean isSameVersion(Entry other) {
+            return path.equals(other.path) && size == other.size && lastModified == other.lastModified;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.exception.FileStorageException;
+import com.example.onlyoffice.exception.ServiceUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 文档修改锁
+ *
+ * 按清理后的文档 ID 的哈希分段加锁：同一文档的保存（回调、上传）、删除和上传文件名的分配互斥，
+ * 不同文档落在不同分段时完全并行。锁只覆盖提交（原子替换、索引更新）和删除，不覆盖写入临时文件，
+ * 大文件上传不会阻塞同一文档的回调保存
+ *
+ * 开启跨进程锁时，获得分段锁后再对 .locks/{分段}.lock 加文件锁，多个后端节点共享同一存储卷时
+ * 同一文档的修改也互斥（各节点的分段数必须相同）
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Slf4j
+public class DocumentLocks {
+
+    /**
+     * 锁文件目录（位于存储目录下，不会被文档索引扫描）
+     */
+    static final String LOCK_DIR = ".locks";
+
+    /**
+     * 等待文件锁时的轮询间隔（毫秒）
+     */
+    private static final long FILE_LOCK_POLL_INTERVAL = 10;
+
+    /**
+     * 已获得的锁，操作结束时关闭
+     */
+    public interface Handle extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+    private final long timeout;
+
+    /**
+     * 锁文件目录，未开启跨进程锁时为 null
+     */
+    private final Path lockDir;
+
+    /**
+     * 各分段的锁文件和当前持有的文件锁（由对应的分段锁保护）
+     */
+    private final FileChannel[] channels;
+    private final FileLock[] fileLocks;
+
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong contended = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    public DocumentLocks(Path uploadPath, OnlyOfficeProperties.Locks config) {
+        int stripes = Integer.highestOneBit(Math.max(1, config.getStripes() - 1)) << 1;
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.mask = stripes - 1;
+        this.timeout = config.getTimeout();
+        this.lockDir = config.isCrossProcess() ? uploadPath.resolve(LOCK_DIR) : null;
+        this.channels = new FileChannel[stripes];
+        this.fileLocks = new FileLock[stripes];
+    }
+
+    /**
+     * 创建锁文件目录
+     */
+    public void start() throws IOException {
+        if (lockDir != null) {
+            Files.createDirectories(lockDir);
+            log.info("跨进程文档锁: {}, {} 个分段", lockDir, locks.length);
+        }
+    }
+
+    /**
+     * 关闭锁文件
+     */
+    public void stop() {
+        for (int i = 0; i < channels.length; i++) {
+            ReentrantLock lock = locks[i];
+            lock.lock();
+            try {
+                closeChannel(i);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 锁定文档（同一线程可重入）
+     *
+     * @param documentId 清理后的文档 ID
+     * @return 已获得的锁，操作结束时关闭
+     * @throws ServiceUnavailableException 等待超时（同一文档的其他修改长时间未完成）
+     */
+    public Handle lock(String documentId) {
+        int stripe = stripeOf(documentId);
+        ReentrantLock lock = locks[stripe];
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        try {
+            if (!lock.tryLock()) {
+                contended.incrementAndGet();
+                if (!lock.tryLock(timeout, TimeUnit.MILLISECONDS)) {
+                    throw timedOut(documentId);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("等待文档锁被中断: " + documentId, 1);
+        }
+
+        if (lockDir != null && lock.getHoldCount() == 1) {
+            try {
+                lockFile(stripe, documentId, deadline);
+            } catch (RuntimeException e) {
+                lock.unlock();
+                throw e;
+            }
+        }
+        acquired.incrementAndGet();
+        return () -> unlock(stripe);
+    }
+
+    /**
+     * 获取锁状态
+     *
+     * @return 统计: stripes, crossProcess, acquired, contended（需要等待）, timeouts
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("stripes", locks.length);
+        stats.put("crossProcess", lockDir != null);
+        stats.put("acquired", acquired.get());
+        stats.put("contended", contended.get());
+        stats.put("timeouts", timeouts.get());
+        return stats;
+    }
+
+    private void unlock(int stripe) {
+        ReentrantLock lock = locks[stripe];
+        try {
+            if (lock.getHoldCount() == 1) {
+                releaseFile(stripe);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 对分段的锁文件加锁，其他进程持有时轮询等待
+     */
+    private void lockFile(int stripe, String documentId, long deadline) {
+        try {
+            while (true) {
+                FileLock fileLock;
+                try {
+                    fileLock = channel(stripe).tryLock();
+                } catch (ClosedChannelException e) {
+                    // 线程被中断时通道随之关闭，下次重新打开
+                    closeChannel(stripe);
+                    throw e;
+                } catch (OverlappingFileLockException e) {
+                    // 同一进程中共享该目录的另一个实例持有锁，与其他进程持有时一样等待
+                    fileLock = null;
+                }
+                if (fileLock != null) {
+                    fileLocks[stripe] = fileLock;
+                    return;
+                }
+                if (System.nanoTime() >= deadline) {
+                    throw timedOut(documentId);
+                }
+                Thread.sleep(FILE_LOCK_POLL_INTERVAL);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("等待文档锁被中断: " + documentId, 1);
+        } catch (IOException e) {
+            throw new FileStorageException("获取文件锁失败: " + documentId, e);
+        }
+    }
+
+    private void releaseFile(int stripe) {
+        FileLock fileLock = fileLocks[stripe];
+        if (fileLock == null) {
+            return;
+        }
+        fileLocks[stripe] = null;
+        try {
+            fileLock.release();
+        } catch (IOException e) {
+            // 通道已关闭时文件锁随之释放
+            log.warn("释放文件锁失败: {}, {}", stripe, e.getMessage());
+            closeChannel(stripe);
+        }
+    }
+
+    private FileChannel channel(int stripe) throws IOException {
+        FileChannel channel = channels[stripe];
+        if (channel == null || !channel.isOpen()) {
+            channel = FileChannel.open(lockDir.resolve(stripe + ".lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channels[stripe] = channel;
+        }
+        return channel;
+    }
+
+    private void closeChannel(int stripe) {
+        FileChannel channel = channels[stripe];
+        channels[stripe] = null;
+        fileLocks[stripe] = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("关闭锁文件失败: {}, {}", stripe, e.getMessage());
+            }
+        }
+    }
+
+    private ServiceUnavailableException timedOut(String documentId) {
+        timeouts.incrementAndGet();
+        log.warn("等待文档锁超时: {}, {}ms", documentId, timeout);
+        return new ServiceUnavailableException("文档正在被其他操作修改，请稍后重试: " + documentId, 1);
+    }
+
+    private int stripeOf(String documentId) {
+        int h = documentId.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
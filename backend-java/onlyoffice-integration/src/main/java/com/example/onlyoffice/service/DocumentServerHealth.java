@@ -0,0 +1,303 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.exception.ServiceUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文档服务器健康探测和熔断
+ *
+ * 后台线程定期请求文档服务器的健康检查接口，保留最近若干次探测的耗时用于计算百分位；
+ * 回调文档下载经过熔断器：连续失败（下载的网络错误、5xx，探测失败或过慢）达到阈值时熔断，
+ * 熔断期间下载立即失败（{@link ServiceUnavailableException}），不再等待超时占用保存线程，
+ * 异步保存随之延后重试（见 {@link CallbackSaveQueue}）
+ *
+ * 熔断持续时间过后，探测成功即恢复；没有探测时放行一次试探下载，成功后恢复，失败则再次熔断
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class DocumentServerHealth {
+
+    private static final String HEALTHCHECK_PATH = "/healthcheck";
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        /** 正常 */
+        CLOSED,
+        /** 熔断中，下载立即失败 */
+        OPEN,
+        /** 试探中，只放行一次下载 */
+        HALF_OPEN
+    }
+
+    private final OnlyOfficeProperties.Health config;
+    private final String probeUrl;
+    private final CloseableHttpClient httpClient;
+    private final ServiceMetrics metrics;
+
+    /**
+     * 熔断器状态（由 this 保护）
+     */
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * 最近探测耗时（纳秒）的环形缓冲（由自身保护）
+     */
+    private final long[] latencies;
+    private int latencyCount;
+    private int latencyNext;
+
+    private volatile long lastProbeTime;
+    private volatile boolean lastProbeSuccess;
+    private volatile String lastProbeError;
+
+    private ScheduledExecutorService probeScheduler;
+
+    public DocumentServerHealth(OnlyOfficeProperties properties, CloseableHttpClient httpClient,
+                                ServiceMetrics metrics) {
+        this.config = properties.getDocumentServer().getHealth();
+        String baseUrl = StringUtils.hasText(properties.getDocumentServer().getInternalUrl())
+                ? properties.getDocumentServer().getInternalUrl()
+                : properties.getDocumentServer().getUrl();
+        this.probeUrl = baseUrl.trim().replaceAll("/+$", "") + HEALTHCHECK_PATH;
+        this.httpClient = httpClient;
+        this.metrics = metrics;
+        this.latencies = new long[Math.max(1, config.getProbeWindow())];
+    }
+
+    /**
+     * 启动探测线程
+     */
+    @PostConstruct
+    public void init() {
+        if (config.getProbeInterval() <= 0) {
+            return;
+        }
+        this.probeScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "document-server-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        probeScheduler.scheduleWithFixedDelay(this::probe, 0, config.getProbeInterval(), TimeUnit.SECONDS);
+        log.info("文档服务器健康探测启动: {}, 间隔 {} 秒", probeUrl, config.getProbeInterval());
+    }
+
+    /**
+     * 停止探测
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (probeScheduler != null) {
+            probeScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 下载前检查熔断器
+     *
+     * 熔断持续时间已过时本次下载作为试探放行，调用方必须随后调用 {@link #record}
+     *
+     * @throws ServiceUnavailableException 熔断中
+     */
+    public void acquire() {
+        synchronized (this) {
+            if (state == State.CLOSED) {
+                return;
+            }
+            if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+                state = State.HALF_OPEN;
+                log.info("文档服务器熔断到期，放行试探下载");
+                return;
+            }
+        }
+        rejected.incrementAndGet();
+        throw new ServiceUnavailableException("文档服务器不可用（熔断中）", retryAfter());
+    }
+
+    /**
+     * 记录下载结果
+     *
+     * @param success 文档服务器是否正常响应（4xx 等业务错误也算正常响应）
+     */
+    public void record(boolean success) {
+        if (success) {
+            onSuccess("下载");
+        } else {
+            onFailure("下载");
+        }
+    }
+
+    /**
+     * 文档服务器是否可用（未熔断）
+     */
+    public synchronized boolean isAvailable() {
+        return state != State.OPEN || System.currentTimeMillis() >= openUntil;
+    }
+
+    /**
+     * 熔断剩余时间（秒，至少 1 秒）
+     */
+    public synchronized int retryAfter() {
+        long remaining = openUntil - System.currentTimeMillis();
+        return (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(remaining + 999));
+    }
+
+    /**
+     * 获取熔断器和探测状态
+     *
+     * @return 状态: state, available, consecutiveFailures, retryAfter（熔断中时）, opened, rejected, probe
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (this) {
+            stats.put("state", state.name());
+            stats.put("consecutiveFailures", consecutiveFailures);
+            stats.put("available", isAvailable());
+            if (state != State.CLOSED) {
+                stats.put("retryAfter", retryAfter());
+            }
+        }
+        stats.put("opened", opened.get());
+        stats.put("rejected", rejected.get());
+
+        Map<String, Object> probe = new HashMap<>();
+        probe.put("url", probeUrl);
+        probe.put("enabled", probeScheduler != null);
+        probe.put("lastProbeTime", lastProbeTime);
+        probe.put("lastProbeSuccess", lastProbeSuccess);
+        if (lastProbeError != null) {
+            probe.put("lastProbeError", lastProbeError);
+        }
+        probe.putAll(latencyStats());
+        stats.put("probe", probe);
+        return stats;
+    }
+
+    /**
+     * 熔断器状态值（用于监控指标）: 0 正常, 1 试探中, 2 熔断中
+     */
+    public synchronized int stateValue() {
+        return state == State.CLOSED ? 0 : state == State.HALF_OPEN ? 1 : 2;
+    }
+
+    /**
+     * 请求健康检查接口，记录耗时
+     */
+    private void probe() {
+        HttpGet request = new HttpGet(probeUrl);
+        request.setConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(config.getProbeTimeout(), TimeUnit.MILLISECONDS)
+                .setResponseTimeout(config.getProbeTimeout(), TimeUnit.MILLISECONDS)
+                .build());
+
+        long start = System.nanoTime();
+        String error = null;
+        try {
+            int statusCode = httpClient.execute(request, response -> {
+                EntityUtils.consume(response.getEntity());
+                return response.getCode();
+            });
+            long elapsed = System.nanoTime() - start;
+            addLatency(elapsed);
+            if (statusCode != 200) {
+                error = "状态码 " + statusCode;
+            } else if (elapsed > TimeUnit.MILLISECONDS.toNanos(config.getSlowThreshold())) {
+                error = "响应过慢 " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms";
+            }
+        } catch (Exception e) {
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+
+        boolean success = error == null;
+        metrics.documentServerProbe(success, start);
+        lastProbeTime = System.currentTimeMillis();
+        lastProbeSuccess = success;
+        lastProbeError = error;
+        if (success) {
+            onSuccess("探测");
+        } else {
+            log.debug("文档服务器探测失败: {}", error);
+            onFailure("探测");
+        }
+    }
+
+    private synchronized void onSuccess(String source) {
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN || (state == State.OPEN && System.currentTimeMillis() >= openUntil)) {
+            state = State.CLOSED;
+            log.info("文档服务器恢复（{}成功），解除熔断", source);
+        }
+    }
+
+    private synchronized void onFailure(String source) {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN
+                || (state == State.CLOSED && consecutiveFailures >= config.getFailureThreshold())) {
+            state = State.OPEN;
+            openUntil = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(config.getOpenDuration());
+            opened.incrementAndGet();
+            log.warn("文档服务器不可用（{}连续失败 {} 次），熔断 {} 秒",
+                    source, consecutiveFailures, config.getOpenDuration());
+        }
+    }
+
+    private void addLatency(long nanos) {
+        synchronized (latencies) {
+            latencies[latencyNext] = nanos;
+            latencyNext = (latencyNext + 1) % latencies.length;
+            latencyCount = Math.min(latencyCount + 1, latencies.length);
+        }
+    }
+
+    /**
+     * 最近探测耗时的百分位（毫秒）
+     */
+    private Map<String, Object> latencyStats() {
+        long[] samples;
+        synchronized (latencies) {
+            samples = Arrays.copyOf(latencies, latencyCount);
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("samples", samples.length);
+        if (samples.length == 0) {
+            return stats;
+        }
+        Arrays.sort(samples);
+        stats.put("p50", percentile(samples, 0.50));
+        stats.put("p95", percentile(samples, 0.95));
+        stats.put("p99", percentile(samples, 0.99));
+        stats.put("max", samples[samples.length - 1] / 1e6);
+        return stats;
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
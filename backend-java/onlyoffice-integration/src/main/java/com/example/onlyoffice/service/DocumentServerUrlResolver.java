@@ -0,0 +1,195 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 文档服务器地址转换
+ *
+ * 将回调中的文档服务器公网地址替换为内部地址（internalUrl），
+ * 后端直接通过内网访问文档服务器，不再绕经公网 Nginx 的 TLS 终结
+ *
+ * 启动时检查内部地址是否可用，之后定期重新检查：不可用时使用原地址，恢复后重新使用内部地址；
+ * 通过内部地址下载连续失败时也立即改用原地址，直到下一次检查成功
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class DocumentServerUrlResolver {
+
+    private static final String HEALTHCHECK_PATH = "/healthcheck";
+
+    /**
+     * 通过内部地址下载连续失败此次数后改用原地址
+     */
+    private static final int FAILURE_THRESHOLD = 3;
+
+    private final OnlyOfficeProperties properties;
+    private final CloseableHttpClient httpClient;
+
+    /**
+     * 客户端的默认请求配置（连接保活等），检查请求在此基础上调整超时
+     */
+    private final RequestConfig defaultRequestConfig;
+
+    private String publicPrefix;
+    private String internalPrefix;
+    private ScheduledExecutorService checkScheduler;
+
+    /**
+     * 内部地址是否可用
+     */
+    private volatile boolean internalAvailable;
+
+    /**
+     * 通过内部地址下载的连续失败次数
+     */
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    public DocumentServerUrlResolver(OnlyOfficeProperties properties, CloseableHttpClient httpClient,
+                                     RequestConfig defaultRequestConfig) {
+        this.properties = properties;
+        this.httpClient = httpClient;
+        this.defaultRequestConfig = defaultRequestConfig;
+    }
+
+    /**
+     * 检查内部地址并启动定期检查
+     */
+    @PostConstruct
+    public void init() {
+        OnlyOfficeProperties.DocumentServer config = properties.getDocumentServer();
+        if (!StringUtils.hasText(config.getInternalUrl())) {
+            return;
+        }
+
+        this.publicPrefix = trimTrailingSlash(config.getUrl());
+        this.internalPrefix = trimTrailingSlash(config.getInternalUrl());
+        if (publicPrefix.equalsIgnoreCase(internalPrefix)) {
+            return;
+        }
+
+        check();
+
+        // 文档服务器可能晚于后端启动，内网路由也可能中途失效或恢复，定期重新检查
+        int interval = config.getInternalUrlCheckInterval();
+        if (interval <= 0) {
+            return;
+        }
+        this.checkScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "document-server-url-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkScheduler.scheduleWithFixedDelay(this::check, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 停止定期检查
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (checkScheduler != null) {
+            checkScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 转换文档服务器地址
+     *
+     * @param url 回调中的地址
+     * @return 内部地址可用且 url 指向文档服务器公网地址时返回内部地址，否则返回原地址
+     */
+    public String resolve(String url) {
+        if (!internalAvailable || url == null) {
+            return url;
+        }
+        if (url.regionMatches(true, 0, publicPrefix, 0, publicPrefix.length())
+                && (url.length() == publicPrefix.length() || url.charAt(publicPrefix.length()) == '/')) {
+            return internalPrefix + url.substring(publicPrefix.length());
+        }
+        return url;
+    }
+
+    /**
+     * 内部地址是否正在使用
+     */
+    public boolean isInternalAvailable() {
+        return internalAvailable;
+    }
+
+    /**
+     * 记录通过内部地址下载的结果，连续失败达到阈值时改用原地址
+     *
+     * @param success 是否成功
+     */
+    public void recordInternal(boolean success) {
+        if (success) {
+            consecutiveFailures.set(0);
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= FAILURE_THRESHOLD && internalAvailable) {
+            internalAvailable = false;
+            log.warn("通过文档服务器内部地址下载连续失败 {} 次，改用原地址，{} 秒后重新检查",
+                    consecutiveFailures.get(), properties.getDocumentServer().getInternalUrlCheckInterval());
+        }
+    }
+
+    /**
+     * 请求内部地址的健康检查接口，可用性变化时记录日志
+     */
+    private void check() {
+        HttpGet request = new HttpGet(internalPrefix + HEALTHCHECK_PATH);
+        request.setConfig(RequestConfig.copy(defaultRequestConfig)
+                .setResponseTimeout(properties.getDocumentServer().getConnectTimeout(), TimeUnit.MILLISECONDS)
+                .build());
+        boolean available = false;
+        String reason;
+        try {
+            int statusCode = httpClient.execute(request, response -> {
+                EntityUtils.consume(response.getEntity());
+                return response.getCode();
+            });
+            available = statusCode == 200;
+            reason = "状态码 " + statusCode;
+        } catch (Exception e) {
+            reason = e.getMessage();
+        }
+
+        boolean previous = internalAvailable;
+        if (available) {
+            consecutiveFailures.set(0);
+        }
+        internalAvailable = available;
+        if (available && !previous) {
+            log.info("文档服务器内部地址可用，回调下载将使用: {}", internalPrefix);
+        } else if (!available && previous) {
+            log.warn("文档服务器内部地址不可用: {}，使用原地址", reason);
+        } else if (!available) {
+            log.debug("文档服务器内部地址仍不可用: {}", reason);
+        }
+    }
+
+    private static String trimTrailingSlash(String url) {
+        String trimmed = url.trim();
+        while (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+}
@@ -4,19 +4,30 @@ import com.example.onlyoffice.config.OnlyOfficeProperties;
 import com.example.onlyoffice.dto.CallbackDTO;
 import com.example.onlyoffice.dto.DocumentConfigDTO;
 import com.example.onlyoffice.exception.DocumentException;
+import com.example.onlyoffice.exception.FileNotFoundException;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.hc.client5.http.classic.methods.HttpGet;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayInputStream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
 
 /**
  * 文档服务类
@@ -30,16 +41,66 @@ import java.util.Map;
 @Service
 public class DocumentService {
 
+    /**
+     * 文档 key 中内容哈希的长度（十六进制字符）
+     */
+    private static final int KEY_HASH_LENGTH = 32;
+
     private final OnlyOfficeProperties properties;
     private final JwtService jwtService;
     private final FileStorageService fileStorageService;
+    private final DocumentDownloader documentDownloader;
+    private final DocumentServerUrlResolver urlResolver;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CallbackSaveQueue saveQueue;
+    private final DocumentConfigCache configCache;
+    private final DocumentServerHealth documentServerHealth;
+    private final EditSessionRegistry editSessions;
+    private final HistoryStore historyStore;
+    private final ServiceMetrics metrics;
 
     public DocumentService(OnlyOfficeProperties properties, 
                           JwtService jwtService, 
-                          FileStorageService fileStorageService) {
+                          FileStorageService fileStorageService,
+                          DocumentDownloader documentDownloader,
+                          DocumentServerUrlResolver urlResolver,
+                          PoolingHttpClientConnectionManager connectionManager,
+                          CallbackSaveQueue saveQueue,
+                          DocumentConfigCache configCache,
+                          DocumentServerHealth documentServerHealth,
+                          EditSessionRegistry editSessions,
+                          HistoryStore historyStore,
+                          ServiceMetrics metrics) {
         this.properties = properties;
         this.jwtService = jwtService;
         this.fileStorageService = fileStorageService;
+        this.documentDownloader = documentDownloader;
+        this.urlResolver = urlResolver;
+        this.connectionManager = connectionManager;
+        this.saveQueue = saveQueue;
+        this.configCache = configCache;
+        this.documentServerHealth = documentServerHealth;
+        this.editSessions = editSessions;
+        this.historyStore = historyStore;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 启动回调保存队列（同时重放上次未完成的保存）
+     */
+    @PostConstruct
+    public void init() {
+        saveQueue.start(this::saveDocument);
+    }
+
+    /**
+     * 停止回调保存队列
+     * 
+     * 在 HTTP 客户端关闭之前等待正在执行的保存完成
+     */
+    @PreDestroy
+    public void destroy() {
+        saveQueue.shutdown();
     }
 
     /**
@@ -57,17 +118,77 @@ public class DocumentService {
                                                 String userId, 
                                                 String userName,
                                                 String mode) {
-        // 验证文件是否存在
-        if (!fileStorageService.fileExists(documentId, fileType)) {
-            throw new DocumentException("文档不存在: " + documentId);
+        return getCachedDocumentConfig(documentId, fileType, userId, userName, mode).getConfig();
+    }
+
+    /**
+     * 获取文档编辑器配置（含缓存信息）
+     * 
+     * 文档未修改时返回缓存中已签名的配置；配置了编辑人数上限时，编辑配置的用户 ID 带有预留标识，不缓存，
+     * 名额已用完时以只读方式打开（见 {@link EditSessionRegistry}）
+     * 
+     * @param documentId 文档 ID（不含扩展名）
+     * @param fileType 文件类型（如 docx）
+     * @param userId 用户 ID
+     * @param userName 用户名称
+     * @param mode 编辑模式: edit, view
+     * @return 缓存条目（配置、实体标签、文件最后修改时间）
+     */
+    public DocumentConfigCache.Entry getCachedDocumentConfig(String documentId,
+                                                             String fileType,
+                                                             String userId,
+                                                             String userName,
+                                                             String mode) {
+        long start = System.nanoTime();
+        try {
+            // 验证文件是否存在（查询内存索引，不访问磁盘）
+            DocumentIndex.Entry document = fileStorageService.getDocument(documentId, fileType);
+            if (document == null) {
+                throw new DocumentException("文档不存在: " + documentId);
+            }
+
+            // 内容哈希作为版本标识（写入时已记录，不重新计算）
+            long lastModified = document.getLastModified();
+            String contentHash = fileStorageService.contentHash(document);
+
+            // 预留编辑名额，名额不足时降为只读
+            String effectiveMode = mode;
+            String sessionUserId = userId;
+            if (mode == null || "edit".equals(mode)) {
+                sessionUserId = editSessions.tryReserve(documentId, userId);
+                if (sessionUserId == null) {
+                    effectiveMode = "view";
+                    sessionUserId = userId;
+                }
+            }
+            String configMode = effectiveMode;
+            String configUserId = sessionUserId;
+
+            DocumentConfigCache.Key key = new DocumentConfigCache.Key(
+                    documentId, fileType, lastModified, contentHash, configUserId, userName, configMode);
+            Supplier<DocumentConfigDTO> loader =
+                    () -> buildDocumentConfig(documentId, fileType, contentHash, configUserId, userName, configMode);
+            // 带预留标识的配置每次都不同，不缓存
+            return Objects.equals(configUserId, userId) ? configCache.get(key, loader) : configCache.build(key, loader);
+        } finally {
+            metrics.configRequest(start);
         }
+    }
 
-        // 获取文件最后修改时间作为版本标识
-        long lastModified = fileStorageService.getLastModifiedTime(documentId, fileType);
+    /**
+     * 构建并签名编辑器配置
+     */
+    private DocumentConfigDTO buildDocumentConfig(String documentId,
+                                                  String fileType,
+                                                  String contentHash,
+                                                  String userId,
+                                                  String userName,
+                                                  String mode) {
+        long start = System.nanoTime();
 
         // 生成文档唯一 key
         // ONLYOFFICE 的 key 只能包含 [0-9a-zA-Z.=_-]，最长 128 字符
-        String documentKey = generateDocumentKey(documentId, lastModified);
+        String documentKey = generateDocumentKey(documentId, contentHash);
 
         // 生成文档下载 URL
         String documentUrl = fileStorageService.generateDownloadUrl(documentId, fileType);
@@ -122,6 +243,7 @@ public class DocumentService {
         String token = jwtService.createToken(tokenPayload);
         config.setToken(token);
 
+        metrics.configBuild(start);
         log.info("生成文档配置: documentId={}, key={}", documentId, documentKey);
 
         return config;
@@ -134,19 +256,55 @@ public class DocumentService {
      */
     public void handleCallback(CallbackDTO callback) {
         log.info("收到回调: status={}, key={}", callback.getStatus(), callback.getKey());
+        metrics.callback(callback.getStatus());
 
+        JfrEvents.CallbackEvent event = new JfrEvents.CallbackEvent();
+        event.begin();
+        event.key = callback.getKey();
+        event.status = callback.getStatus() != null ? callback.getStatus() : -1;
+        try {
+            processCallback(callback, event);
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * 验证回调并根据状态处理
+     */
+    private void processCallback(CallbackDTO callback, JfrEvents.CallbackEvent event) {
         // 验证 JWT Token（如果存在）
         if (callback.getToken() != null && !callback.getToken().isEmpty()) {
-            if (!jwtService.isTokenValid(callback.getToken())) {
+            long verifyStart = System.nanoTime();
+            boolean valid = jwtService.isTokenValid(callback.getToken());
+            event.verifyDuration = System.nanoTime() - verifyStart;
+            if (!valid) {
                 throw new DocumentException("JWT Token 验证失败");
             }
             log.debug("JWT Token 验证成功");
         }
 
+        // 更新编辑会话（连接、断开、关闭）
+        String sessionDocumentId = extractDocumentIdFromKey(callback.getKey());
+        if (sessionDocumentId != null) {
+            editSessions.onCallback(sessionDocumentId, callback);
+        }
+
         // 根据状态处理
         if (callback.needSave()) {
             // 需要保存文档
-            saveDocument(callback);
+            // 文档服务器熔断中时同步保存也改为排队，恢复后由后台线程保存
+            event.async = properties.getCallback().isAsyncSave() || !documentServerHealth.isAvailable();
+            if (event.async) {
+                // 写入日志后立即应答，由后台线程下载保存
+                String documentId = extractDocumentIdFromKey(callback.getKey());
+                if (documentId == null) {
+                    throw new DocumentException("无法从 key 中提取文档 ID: " + callback.getKey());
+                }
+                saveQueue.submit(documentId, callback);
+            } else {
+                saveDocument(callback);
+            }
         } else if (callback.isEditing()) {
             // 文档正在编辑中
             log.debug("文档正在编辑中: key={}", callback.getKey());
@@ -162,6 +320,8 @@ public class DocumentService {
     /**
      * 保存文档
      * 
+     * 最终保存（status 2）在启用版本历史时生成新版本：被替换的版本和变更记录移入历史目录
+     * 
      * @param callback 回调数据
      */
     private void saveDocument(CallbackDTO callback) {
@@ -186,30 +346,116 @@ public class DocumentService {
 
         log.info("开始保存文档: documentId={}, url={}", documentId, url);
 
-        // 下载文档
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            HttpGet request = new HttpGet(url);
-            
-            byte[] content = httpClient.execute(request, response -> {
-                int statusCode = response.getCode();
-                if (statusCode != 200) {
-                    throw new DocumentException("下载文档失败，状态码: " + statusCode);
-                }
-                return EntityUtils.toByteArray(response.getEntity());
-            });
+        JfrEvents.SaveEvent event = new JfrEvents.SaveEvent();
+        event.begin();
+        event.documentId = documentId;
+        event.fileType = fileType;
 
-            // 保存文档
-            fileStorageService.saveFromStream(
-                    new ByteArrayInputStream(content), 
-                    documentId, 
-                    fileType
-            );
+        // 下载到存储目录中的临时文件，完成后原子替换原文件
+        Path tempPath = fileStorageService.createTempFile(documentId, fileType);
+        Path changesPath = null;
+        try {
+            long start = System.nanoTime();
+            // 下载时计算内容哈希，提交时不再读取文件
+            MessageDigest digest = FileStorageService.sha256();
+            long size = download(url, tempPath, digest);
+            String sha256 = FileStorageService.toHex(digest.digest());
+            long downloaded = System.nanoTime();
+            metrics.saveDownloaded(size, start);
+            event.size = size;
+            event.downloadDuration = downloaded - start;
+
+            if (historyStore.isEnabled() && callback.isFinalSave()) {
+                changesPath = downloadChanges(callback, documentId, fileType);
+                historyStore.commitVersion(documentId, fileType, tempPath, sha256, changesPath, callback);
+            } else {
+                fileStorageService.commitTempFile(tempPath, documentId, fileType, sha256);
+            }
+            event.commitDuration = System.nanoTime() - downloaded;
+            event.success = true;
 
-            log.info("文档保存成功: documentId={}", documentId);
+            log.info("文档保存成功: documentId={}, size={}", documentId, size);
         } catch (IOException e) {
+            fileStorageService.discardTempFile(tempPath);
+            metrics.saveFailed();
             log.error("保存文档失败: {}", e.getMessage());
             throw new DocumentException("保存文档失败: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            fileStorageService.discardTempFile(tempPath);
+            metrics.saveFailed();
+            throw e;
+        } finally {
+            if (changesPath != null) {
+                fileStorageService.discardTempFile(changesPath);
+            }
+            event.commit();
+        }
+    }
+
+    /**
+     * 下载变更记录（changesurl 指向的 zip）到历史目录中的临时文件
+     * 
+     * 变更记录只用于在历史中查看修改，下载失败时版本仍然保存（没有变更记录）
+     * 
+     * @return 临时文件路径，没有变更记录或下载失败时为 null
+     */
+    private Path downloadChanges(CallbackDTO callback, String documentId, String fileType) throws IOException {
+        String changesUrl = callback.getChangesurl();
+        if (changesUrl == null || changesUrl.isEmpty()) {
+            return null;
+        }
+        Path changesPath = historyStore.createChangesTempFile(documentId, fileType);
+        try {
+            download(changesUrl, changesPath, null);
+            return changesPath;
+        } catch (IOException e) {
+            fileStorageService.discardTempFile(changesPath);
+            log.warn("下载变更记录失败，版本不含变更记录: documentId={}, {}", documentId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 下载回调文档（经过文档服务器熔断器）
+     *
+     * 网络错误和 5xx 计为文档服务器失败，4xx 等业务错误说明文档服务器正常响应
+     *
+     * @throws com.example.onlyoffice.exception.ServiceUnavailableException 文档服务器熔断中
+     */
+    private long download(String url, Path tempPath, MessageDigest digest) throws IOException {
+        documentServerHealth.acquire();
+        boolean failed = false;
+        try {
+            return downloadWithFallback(url, tempPath, digest);
+        } catch (IOException e) {
+            failed = true;
+            throw e;
+        } finally {
+            documentServerHealth.record(!failed);
+        }
+    }
+
+    /**
+     * 下载回调文档
+     *
+     * 优先通过内部地址下载，失败时改用回调中的原地址；连续失败时内部地址暂停使用（见 {@link DocumentServerUrlResolver}）
+     */
+    private long downloadWithFallback(String url, Path tempPath, MessageDigest digest) throws IOException {
+        long maxSize = properties.getStorage().getMaxSize();
+        String internalUrl = urlResolver.resolve(url);
+        if (internalUrl.equals(url)) {
+            return documentDownloader.download(url, tempPath, maxSize, digest);
+        }
+        long size;
+        try {
+            size = documentDownloader.download(internalUrl, tempPath, maxSize, digest);
+        } catch (IOException e) {
+            urlResolver.recordInternal(false);
+            log.warn("通过内部地址下载失败，改用原地址: {}", e.getMessage());
+            return documentDownloader.download(url, tempPath, maxSize, digest);
         }
+        urlResolver.recordInternal(true);
+        return size;
     }
 
     /**
@@ -218,18 +464,21 @@ public class DocumentService {
      * ONLYOFFICE 使用 key 来识别文档版本
      * key 变化时会重新加载文档
      * 
+     * 版本部分取内容哈希，只有内容变化时 key 才变化：修改时间变化（touch、复制、从备份恢复、时钟偏差）
+     * 不会让文档服务器重新下载和转换，同一毫秒内的两次写入也会得到不同的 key
+     * 
      * @param documentId 文档 ID
-     * @param lastModified 最后修改时间
+     * @param contentHash 内容的 SHA-256
      * @return 文档 key
      */
-    private String generateDocumentKey(String documentId, long lastModified) {
+    private String generateDocumentKey(String documentId, String contentHash) {
         // 对中文文件名进行 Base64 编码
         String encodedId = Base64.getUrlEncoder()
                 .withoutPadding()
                 .encodeToString(documentId.getBytes(StandardCharsets.UTF_8));
         
-        // 组合 key: base64(documentId)_timestamp
-        return encodedId + "_" + lastModified;
+        // 组合 key: base64(documentId)_sha256 前 32 位（128 位）
+        return encodedId + "_" + contentHash.substring(0, KEY_HASH_LENGTH);
     }
 
     /**
@@ -243,7 +492,7 @@ public class DocumentService {
             return null;
         }
 
-        // key 格式: base64(documentId)_timestamp
+        // key 格式: base64(documentId)_版本（内容哈希，旧版本为时间戳）
         int lastUnderscore = key.lastIndexOf('_');
         if (lastUnderscore <= 0) {
             return null;
@@ -295,4 +544,218 @@ public class DocumentService {
     public String getDocumentServerUrl() {
         return properties.getDocumentServer().getUrl();
     }
+
+    /**
+     * 获取回调保存队列状态
+     * 
+     * @return 队列统计
+     */
+    public Map<String, Integer> getSaveQueueStats() {
+        return saveQueue.getStats();
+    }
+
+    /**
+     * 获取编辑器配置缓存状态
+     * 
+     * @return 缓存统计: size, hits, misses, evictions
+     */
+    public Map<String, Long> getConfigCacheStats() {
+        return configCache.getStats();
+    }
+
+    /**
+     * 获取文档服务器熔断器和健康探测状态
+     * 
+     * @return 状态: state, available, consecutiveFailures, opened, rejected, probe（含最近探测耗时百分位）
+     */
+    public Map<String, Object> getDocumentServerHealth() {
+        return documentServerHealth.getStats();
+    }
+
+    /**
+     * 获取编辑会话状态
+     * 
+     * @return 统计: editors, pending, documents, maxEditors, queued, downgraded
+     */
+    public Map<String, Long> getEditSessionStats() {
+        return editSessions.getStats();
+    }
+
+    /**
+     * 获取各文档的编辑会话数
+     * 
+     * @return 文档 ID -> editors, pending
+     */
+    public Map<String, Map<String, Integer>> getDocumentEditSessions() {
+        return editSessions.getDocumentSessions();
+    }
+
+    /**
+     * 获取文档的版本历史（编辑器 onRequestHistory 事件中传给 refreshHistory）
+     * 
+     * @param documentId 文档 ID
+     * @param fileType 文件类型
+     * @return currentVersion 和 history（各版本的 key、保存时间、用户、变更历史）
+     * @throws FileNotFoundException 文档不存在
+     */
+    public Map<String, Object> getHistory(String documentId, String fileType) {
+        List<HistoryStore.Version> versions = historyStore.getVersions(documentId, fileType);
+        if (versions.isEmpty()) {
+            throw new FileNotFoundException("文件不存在: " + documentId + "." + fileType);
+        }
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+                .withZone(ZoneId.systemDefault());
+        List<Map<String, Object>> history = new ArrayList<>(versions.size());
+        for (HistoryStore.Version version : versions) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("version", version.getVersion());
+            item.put("key", generateDocumentKey(documentId, version.getSha256()));
+            item.put("created", formatter.format(Instant.ofEpochMilli(version.getCreated())));
+            if (version.getUserId() != null) {
+                Map<String, Object> user = new LinkedHashMap<>();
+                user.put("id", version.getUserId());
+                user.put("name", version.getUserName());
+                item.put("user", user);
+            }
+            if (version.getServerVersion() != null) {
+                item.put("serverVersion", version.getServerVersion());
+            }
+            if (version.getChanges() != null) {
+                item.put("changes", version.getChanges());
+            }
+            history.add(item);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("currentVersion", versions.get(versions.size() - 1).getVersion());
+        result.put("history", history);
+        return result;
+    }
+
+    /**
+     * 获取版本的下载地址（编辑器 onRequestHistoryData 事件中传给 setHistoryData）
+     * 
+     * 包含上一版本的地址和该版本的变更记录地址（文档服务器据此显示修改），整体用 JWT 签名
+     * 
+     * @param documentId 文档 ID
+     * @param fileType 文件类型
+     * @param version 版本号
+     * @return version, key, url, fileType, changesUrl（有变更记录时）, previous（有上一版本时）, token
+     * @throws FileNotFoundException 版本不存在或已被清理
+     */
+    public Map<String, Object> getHistoryData(String documentId, String fileType, int version) {
+        List<HistoryStore.Version> versions = historyStore.getVersions(documentId, fileType);
+        int index = -1;
+        for (int i = 0; i < versions.size(); i++) {
+            if (versions.get(i).getVersion() == version) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            throw new FileNotFoundException("版本不存在: " + documentId + "." + fileType + " v" + version);
+        }
+        HistoryStore.Version entry = versions.get(index);
+        boolean current = index == versions.size() - 1;
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("version", version);
+        data.put("key", generateDocumentKey(documentId, entry.getSha256()));
+        data.put("url", current
+                ? fileStorageService.generateDownloadUrl(documentId, fileType)
+                : generateHistoryUrl(documentId, fileType, entry, false));
+        data.put("fileType", fileType);
+        if (entry.isChangesFile()) {
+            data.put("changesUrl", generateHistoryUrl(documentId, fileType, entry, true));
+        }
+        if (index > 0) {
+            HistoryStore.Version previous = versions.get(index - 1);
+            Map<String, Object> previousData = new LinkedHashMap<>();
+            previousData.put("key", generateDocumentKey(documentId, previous.getSha256()));
+            previousData.put("url", generateHistoryUrl(documentId, fileType, previous, false));
+            previousData.put("fileType", fileType);
+            data.put("previous", previousData);
+        }
+        data.put("token", jwtService.createToken(new HashMap<>(data)));
+        return data;
+    }
+
+    /**
+     * 获取历史版本文件（版本内容或变更记录）
+     * 
+     * @param documentId 文档 ID
+     * @param fileType 文件类型
+     * @param version 版本号
+     * @param changes true 获取变更记录（zip），false 获取版本内容
+     * @return 文件路径
+     * @throws FileNotFoundException 版本不存在或已被清理
+     */
+    public Path getHistoryFile(String documentId, String fileType, int version, boolean changes) {
+        return changes
+                ? historyStore.getChangesFile(documentId, fileType, version)
+                : historyStore.getVersionFile(documentId, fileType, version);
+    }
+
+    /**
+     * 历史版本文件是否已归档（内容不会再变化，可以长期缓存）
+     * 
+     * @param path {@link #getHistoryFile} 返回的路径
+     */
+    public boolean isArchivedHistoryFile(Path path) {
+        return historyStore.isArchived(path);
+    }
+
+    /**
+     * 删除文档及其版本历史
+     * 
+     * 持有文档锁完成两步删除：同一文档的保存不会在两步之间提交新版本，留下没有文档的历史
+     * 
+     * @param documentId 文档 ID
+     * @param fileType 文件类型
+     */
+    public void deleteDocument(String documentId, String fileType) {
+        try (DocumentLocks.Handle lock = fileStorageService.lockDocument(documentId)) {
+            fileStorageService.deleteFile(documentId, fileType);
+            historyStore.delete(documentId, fileType);
+        }
+    }
+
+    /**
+     * 获取版本历史状态
+     * 
+     * @return 统计: enabled, cachedManifests, recorded, pruned
+     */
+    public Map<String, Object> getHistoryStats() {
+        return historyStore.getStats();
+    }
+
+    /**
+     * 生成历史版本下载 URL（指向 /api/history/{id}/{version}）
+     * 
+     * 带上内容哈希：文档删除后重新创建时版本号从 1 开始，不会命中之前长期缓存的响应
+     */
+    private String generateHistoryUrl(String documentId, String fileType, HistoryStore.Version version,
+                                      boolean changes) {
+        String encodedId = URLEncoder.encode(documentId, StandardCharsets.UTF_8).replace("+", "%20");
+        String encodedType = URLEncoder.encode(fileType, StandardCharsets.UTF_8);
+        return properties.getBackend().getCallbackUrl() + "/api/history/" + encodedId + "/" + version.getVersion()
+                + (changes ? "/changes" : "") + "?fileType=" + encodedType
+                + "&v=" + version.getSha256().substring(0, KEY_HASH_LENGTH);
+    }
+
+    /**
+     * 获取文档服务器连接池状态
+     * 
+     * @return 连接池统计: leased（使用中）, pending（等待中）, available（空闲）, max（上限）
+     */
+    public Map<String, Integer> getConnectionPoolStats() {
+        PoolStats stats = connectionManager.getTotalStats();
+        Map<String, Integer> result = new HashMap<>();
+        result.put("leased", stats.getLeased());
+        result.put("pending", stats.getPending());
+        result.put("available", stats.getAvailable());
+        result.put("max", stats.getMax());
+        return result;
+    }
 }
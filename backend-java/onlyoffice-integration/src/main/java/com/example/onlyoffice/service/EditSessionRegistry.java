@@ -0,0 +1,384 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.dto.CallbackDTO;
+import com.example.onlyoffice.exception.ServiceUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * 编辑会话登记
+ *
+ * 根据 ONLYOFFICE 回调维护每个文档当前的编辑用户：带 users 的回调（status 1、6 等）以 users 为准，
+ * 只有 actions 时按连接（type 1）和断开（type 0）增减；status 0（文档服务器找不到该 key）、
+ * 2、3（所有用户已关闭）和 4（关闭无修改）结束该文档的会话
+ *
+ * 配置了编辑人数上限时，发放编辑配置前先预留名额，名额用完时按配置以只读方式打开，
+ * 或返回 503 和 Retry-After 让客户端稍后重试（不在请求线程中等待）。每份编辑配置的用户 ID 都带有唯一的预留标识，
+ * 回调中的用户 ID 与之一一对应：匿名用户或同一用户在多个浏览器中打开时各占一个名额。
+ * 预留在收到对应的连接回调时转为编辑会话，超过有效期未连接的由后台线程释放
+ *
+ * 文档按 ID 的哈希分到若干分片，每次回调只锁定一个文档；总数用原子计数维护，查询为 O(1)
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class EditSessionRegistry {
+
+    private static final int SHARDS = 16;
+
+    /**
+     * 与编辑器配置中的默认用户 ID 一致
+     */
+    private static final String ANONYMOUS = "anonymous";
+
+    /**
+     * 会话用户 ID 中用户 ID 与预留标识的分隔符
+     */
+    private static final String TOKEN_SEPARATOR = "~";
+
+    /**
+     * 会话用户 ID 末尾的预留标识（16 位十六进制）
+     */
+    private static final Pattern RESERVATION_TOKEN = Pattern.compile("~[0-9a-f]{16}$");
+
+    private final OnlyOfficeProperties.EditSessions config;
+
+    @SuppressWarnings("unchecked")
+    private final ConcurrentHashMap<String, DocumentSessions>[] shards = new ConcurrentHashMap[SHARDS];
+
+    /**
+     * 编辑会话和预留名额的总数（与上限比较）
+     */
+    private final AtomicInteger used = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final AtomicLong downgraded = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+
+    private ScheduledExecutorService cleanupScheduler;
+
+    public EditSessionRegistry(OnlyOfficeProperties properties) {
+        this.config = properties.getEditSessions();
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * 启动清理线程
+     */
+    @PostConstruct
+    public void init() {
+        if (config.getCleanupInterval() <= 0) {
+            return;
+        }
+        this.cleanupScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "edit-session-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleanupScheduler.scheduleWithFixedDelay(this::cleanup,
+                config.getCleanupInterval(), config.getCleanupInterval(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * 停止清理线程
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (cleanupScheduler != null) {
+            cleanupScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 为即将打开编辑器的用户预留编辑名额
+     *
+     * 每次调用都预留新的名额（不按用户 ID 合并），返回的会话用户 ID 应作为编辑器配置中的用户 ID
+     *
+     * @param documentId 文档 ID
+     * @param userId 用户 ID（为 null 时按匿名用户）
+     * @return 会话用户 ID（未配置上限时为原用户 ID）；null 表示名额已用完，调用方应以只读方式打开
+     * @throws ServiceUnavailableException 名额已用完且 overflow 为 queue
+     */
+    public String tryReserve(String documentId, String userId) {
+        if (config.getMaxEditors() <= 0) {
+            return userId;
+        }
+        String user = (userId != null ? userId : ANONYMOUS) + TOKEN_SEPARATOR
+                + String.format("%016x", ThreadLocalRandom.current().nextLong());
+        if (reserve(documentId, user)) {
+            return user;
+        }
+
+        if (config.getOverflow() == OnlyOfficeProperties.EditOverflow.QUEUE) {
+            queued.incrementAndGet();
+            throw new ServiceUnavailableException("编辑人数已达上限，请稍后重试: " + config.getMaxEditors(),
+                    Math.max(1, config.getQueueRetryAfter()));
+        }
+
+        downgraded.incrementAndGet();
+        log.info("编辑人数已达上限 {}，以只读方式打开: documentId={}, userId={}",
+                config.getMaxEditors(), documentId, userId);
+        return null;
+    }
+
+    /**
+     * 去掉会话用户 ID 中的预留标识
+     *
+     * @param sessionUserId 回调中的用户 ID
+     * @return 发放配置时的用户 ID
+     */
+    public static String userIdOf(String sessionUserId) {
+        if (sessionUserId == null) {
+            return null;
+        }
+        return RESERVATION_TOKEN.matcher(sessionUserId).replaceFirst("");
+    }
+
+    /**
+     * 根据回调更新文档的编辑会话
+     *
+     * @param documentId 文档 ID
+     * @param callback 回调数据
+     */
+    public void onCallback(String documentId, CallbackDTO callback) {
+        Integer status = callback.getStatus();
+        boolean closed = status != null && (status == 0 || status == 2 || status == 3 || status == 4);
+        if (closed) {
+            if (shard(documentId).containsKey(documentId)) {
+                update(documentId, sessions -> {
+                    sessions.editors.forEach(u -> release(false));
+                    sessions.editors.clear();
+                    return null;
+                });
+            }
+            return;
+        }
+
+        if (callback.getUsers() == null && callback.getActions() == null) {
+            return;
+        }
+        update(documentId, sessions -> {
+            if (callback.getUsers() != null) {
+                Set<String> current = new HashSet<>(callback.getUsers());
+                for (Iterator<String> it = sessions.editors.iterator(); it.hasNext(); ) {
+                    if (!current.contains(it.next())) {
+                        it.remove();
+                        release(false);
+                    }
+                }
+                for (String user : current) {
+                    connect(sessions, user);
+                }
+            } else {
+                for (CallbackDTO.Action action : callback.getActions()) {
+                    if (action.getType() == null || action.getUserid() == null) {
+                        continue;
+                    }
+                    if (action.getType() == 1) {
+                        connect(sessions, action.getUserid());
+                    } else if (action.getType() == 0 && sessions.editors.remove(action.getUserid())) {
+                        release(false);
+                    }
+                }
+            }
+            sessions.lastSeen = System.currentTimeMillis();
+            return null;
+        });
+    }
+
+    /**
+     * 获取编辑会话总数
+     *
+     * @return 统计: editors（编辑会话）, pending（预留名额）, documents（有会话的文档数）, maxEditors（上限，0 表示不限制）,
+     *         queued（累计返回 503 让客户端重试）, downgraded（累计降为只读）
+     */
+    public Map<String, Long> getStats() {
+        long documents = 0;
+        for (ConcurrentHashMap<String, DocumentSessions> shard : shards) {
+            documents += shard.size();
+        }
+        int pendingCount = pending.get();
+        Map<String, Long> stats = new HashMap<>();
+        stats.put("editors", (long) Math.max(0, used.get() - pendingCount));
+        stats.put("pending", (long) pendingCount);
+        stats.put("documents", documents);
+        stats.put("maxEditors", (long) config.getMaxEditors());
+        stats.put("queued", queued.get());
+        stats.put("downgraded", downgraded.get());
+        return stats;
+    }
+
+    /**
+     * 获取各文档的编辑会话数
+     *
+     * @return 文档 ID -> editors, pending
+     */
+    public Map<String, Map<String, Integer>> getDocumentSessions() {
+        Map<String, Map<String, Integer>> documents = new HashMap<>();
+        for (ConcurrentHashMap<String, DocumentSessions> shard : shards) {
+            shard.forEach((documentId, sessions) -> {
+                Map<String, Integer> counts = new HashMap<>();
+                synchronized (sessions) {
+                    counts.put("editors", sessions.editors.size());
+                    counts.put("pending", sessions.pending.size());
+                }
+                documents.put(documentId, counts);
+            });
+        }
+        return documents;
+    }
+
+    /**
+     * 为会话用户 ID 预留一个名额
+     */
+    private boolean reserve(String documentId, String user) {
+        return update(documentId, sessions -> {
+            long expiresAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(config.getReservationTtl());
+            int current;
+            do {
+                current = used.get();
+                if (current >= config.getMaxEditors()) {
+                    return false;
+                }
+            } while (!used.compareAndSet(current, current + 1));
+            pending.incrementAndGet();
+            sessions.pending.put(user, expiresAt);
+            return true;
+        });
+    }
+
+    /**
+     * 用户已连接：有预留时转为编辑会话，否则（直接打开的编辑器、重启前的会话）新增
+     */
+    private void connect(DocumentSessions sessions, String user) {
+        if (!sessions.editors.add(user)) {
+            return;
+        }
+        if (sessions.pending.remove(user) != null) {
+            pending.decrementAndGet();
+        } else {
+            used.incrementAndGet();
+        }
+    }
+
+    /**
+     * 释放一个名额
+     */
+    private void release(boolean reservation) {
+        used.decrementAndGet();
+        if (reservation) {
+            pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * 锁定文档的会话（不存在时创建）后更新，更新后没有会话和预留时移除
+     */
+    private <T> T update(String documentId, Function<DocumentSessions, T> action) {
+        ConcurrentHashMap<String, DocumentSessions> shard = shard(documentId);
+        while (true) {
+            DocumentSessions sessions = shard.computeIfAbsent(documentId, id -> new DocumentSessions());
+            synchronized (sessions) {
+                // 已被其他线程移除时重新获取
+                if (sessions.removed) {
+                    continue;
+                }
+                try {
+                    return action.apply(sessions);
+                } finally {
+                    removeIfEmpty(documentId, sessions);
+                }
+            }
+        }
+    }
+
+    private void removeIfEmpty(String documentId, DocumentSessions sessions) {
+        if (sessions.editors.isEmpty() && sessions.pending.isEmpty()) {
+            sessions.removed = true;
+            shard(documentId).remove(documentId, sessions);
+        }
+    }
+
+    /**
+     * 释放过期的预留；文档长时间没有回调（丢失了关闭回调）时结束其会话
+     */
+    private void cleanup() {
+        try {
+            long now = System.currentTimeMillis();
+            long staleBefore = now - TimeUnit.SECONDS.toMillis(config.getSessionTimeout());
+            int expired = 0;
+            int stale = 0;
+            for (ConcurrentHashMap<String, DocumentSessions> shard : shards) {
+                for (Map.Entry<String, DocumentSessions> entry : shard.entrySet()) {
+                    DocumentSessions sessions = entry.getValue();
+                    synchronized (sessions) {
+                        for (Iterator<Long> it = sessions.pending.values().iterator(); it.hasNext(); ) {
+                            if (it.next() <= now) {
+                                it.remove();
+                                release(true);
+                                expired++;
+                            }
+                        }
+                        if (!sessions.editors.isEmpty() && sessions.lastSeen < staleBefore) {
+                            stale += sessions.editors.size();
+                            sessions.editors.forEach(u -> release(false));
+                            sessions.editors.clear();
+                        }
+                        removeIfEmpty(entry.getKey(), sessions);
+                    }
+                }
+            }
+            if (expired > 0 || stale > 0) {
+                log.info("清理编辑会话: 过期预留 {}, 超时会话 {}", expired, stale);
+            }
+        } catch (Exception e) {
+            log.error("清理编辑会话失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private ConcurrentHashMap<String, DocumentSessions> shard(String documentId) {
+        int h = documentId.hashCode();
+        return shards[(h ^ (h >>> 16)) & (SHARDS - 1)];
+    }
+
+    /**
+     * 单个文档的编辑会话（由自身保护）
+     */
+    private static class DocumentSessions {
+        private final Set<String> editors = new HashSet<>();
+
+        /**
+         * 预留名额: 会话用户 ID -> 过期时间
+         */
+        private final Map<String, Long> pending = new HashMap<>();
+
+        private long lastSeen = System.currentTimeMillis();
+
+        /**
+         * 已从分片中移除，持有旧引用的线程需重新获取
+         */
+        private boolean removed;
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.exception.FileNotFoundException;
+import com.example.onlyoffice.exception.ServiceUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文档下载服务
+ *
+ * 为 ONLYOFFICE 和浏览器提供文档内容：
+ * 1. 强 ETag（由文档内容的 SHA-256 生成）和 Last-Modified，支持 If-None-Match / If-Modified-Since，
+ *    文档未修改时返回 304，重新打开文档不再重复传输
+ * 2. 支持单个字节范围（Range / If-Range），返回 206
+ * 3. 从打开的文件通过 FileChannel.transferTo 发送，发送过程中文档被替换不影响本次响应
+ * 4. 限制并发下载数（许可持有到发送结束），超出时返回 503 和 Retry-After
+ *
+ * 不使用容器的 sendfile：容器在请求返回后按文件名重新打开，可能发送替换后的内容
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Slf4j
+@Service
+public class FileServingService {
+
+    private final OnlyOfficeProperties.FileServing config;
+    private final FileStorageService fileStorageService;
+    private final Semaphore permits;
+
+    private final AtomicLong streamed = new AtomicLong();
+    private final AtomicLong partial = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public FileServingService(OnlyOfficeProperties properties, FileStorageService fileStorageService) {
+        this.config = properties.getFileServing();
+        this.fileStorageService = fileStorageService;
+        this.permits = new Semaphore(config.getMaxConcurrent());
+    }
+
+    /**
+     * 发送文档
+     *
+     * 持有文档锁打开文件并读取索引中的版本信息，之后从打开的文件发送：
+     * 同时进行的保存是原子替换，不影响已打开的文件，长度、ETag 和内容始终属于同一版本
+     *
+     * @param documentId 文档 ID
+     * @param fileType 文件类型
+     * @param request 请求
+     * @param response 响应
+     */
+    public void send(String documentId, String fileType,
+                     HttpServletRequest request, HttpServletResponse response) throws IOException {
+        DocumentIndex.Entry document = fileStorageService.getDocument(documentId, fileType);
+        if (document == null) {
+            throw new FileNotFoundException("文件不存在: " + documentId + "." + fileType);
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        // 未修改时返回 304（前置条件不满足时返回 412），会同时写入 ETag 和 Last-Modified，不占用下载许可
+        if (new ServletWebRequest(request, response).checkNotModified(
+                etagOf(fileStorageService.contentHash(document)), document.getLastModified())) {
+            notModified.incrementAndGet();
+            return;
+        }
+
+        // 许可持有到发送结束
+        acquire();
+        try (Snapshot snapshot = open(documentId, fileType)) {
+            send(snapshot, request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void send(Snapshot snapshot, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        // 以打开的版本为准（可能比条件请求检查时更新）
+        String etag = etagOf(snapshot.sha256);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, snapshot.lastModified);
+
+        long size = snapshot.channel.size();
+        long start = 0;
+        long length = size;
+        HttpRange range = requestedRange(request, etag, snapshot.lastModified);
+        if (range != null) {
+            try {
+                start = range.getRangeStart(size);
+                length = range.getRangeEnd(size) - start + 1;
+            } catch (IllegalArgumentException e) {
+                length = 0;
+            }
+            if (start >= size || length <= 0) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            partial.incrementAndGet();
+        }
+        String contentRange = range != null ? "bytes " + start + "-" + (start + length - 1) + "/" + size : null;
+
+        String contentType = MediaTypeFactory.getMediaType(snapshot.filename)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+        writeHeaders(response, contentType, length, contentRange);
+        if (HttpMethod.HEAD.matches(request.getMethod()) || length == 0) {
+            return;
+        }
+
+        transfer(snapshot, start, length, response);
+        streamed.incrementAndGet();
+    }
+
+    /**
+     * 获取下载状态
+     *
+     * @return 统计: active, maxConcurrent, streamed, partial, notModified, rejected
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("active", (long) (config.getMaxConcurrent() - permits.availablePermits()));
+        stats.put("maxConcurrent", (long) config.getMaxConcurrent());
+        stats.put("streamed", streamed.get());
+        stats.put("partial", partial.get());
+        stats.put("notModified", notModified.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    /**
+     * 文档内容的强 ETag：内容相同则相同（touch、从备份恢复不影响重新验证），内容不同则一定不同
+     *
+     * @param sha256 内容的 SHA-256
+     */
+    static String etagOf(String sha256) {
+        return "\"" + sha256 + "\"";
+    }
+
+    /**
+     * 解析请求的字节范围
+     *
+     * 只支持单个范围；多个范围、格式错误或 If-Range 不匹配时返回 null（发送完整文档）
+     */
+    private HttpRange requestedRange(HttpServletRequest request, String etag, long lastModified) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null || !ifRangeMatches(request, etag, lastModified)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * If-Range 与当前版本一致（ETag 强比较或 Last-Modified 精确到秒相等）
+     */
+    private boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private void acquire() {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(config.getAcquireTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.incrementAndGet();
+            throw new ServiceUnavailableException("下载并发数已达上限: " + config.getMaxConcurrent(),
+                    config.getRetryAfter());
+        }
+    }
+
+    /**
+     * 持有文档锁打开文档：替换和索引更新也持有文档锁，打开的文件与索引记录（修改时间、内容哈希）属于同一版本
+     */
+    private Snapshot open(String documentId, String fileType) throws IOException {
+        try (DocumentLocks.Handle lock = fileStorageService.lockDocument(documentId)) {
+            DocumentIndex.Entry document = fileStorageService.getDocument(documentId, fileType);
+            if (document == null) {
+                throw new FileNotFoundException("文件不存在: " + documentId + "." + fileType);
+            }
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(document.getPath(), StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                // 索引更新前文件被外部删除
+                throw new FileNotFoundException("文件不存在: " + document.getFilename());
+            }
+            try {
+                return new Snapshot(document.getFilename(), document.getLastModified(),
+                        fileStorageService.contentHash(document), channel);
+            } catch (RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+    }
+
+    private void writeHeaders(HttpServletResponse response, String contentType, long length, String contentRange) {
+        if (contentRange != null) {
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange);
+        }
+        response.setContentType(contentType);
+        response.setContentLengthLong(length);
+    }
+
+    private void transfer(Snapshot snapshot, long start, long length, HttpServletResponse response)
+            throws IOException {
+        FileChannel channel = snapshot.channel;
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        long position = start;
+        long end = start + length;
+        while (position < end) {
+            long transferred = channel.transferTo(position, end - position, out);
+            if (transferred <= 0) {
+                // 发送过程中文件被截断
+                log.warn("文件在发送过程中被修改: {}", snapshot.filename);
+                break;
+            }
+            position += transferred;
+        }
+    }
+
+    /**
+     * 已打开的文档版本
+     */
+    private static class Snapshot implements AutoCloseable {
+        private final String filename;
+        private final long lastModified;
+        private final String sha256;
+        private final FileChannel channel;
+
+        Snapshot(String filename, long lastModified, String sha256, FileChannel channel) {
+            this.filename = filename;
+            this.lastModified = lastModified;
+            this.sha256 = sha256;
+            this.channel = channel;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
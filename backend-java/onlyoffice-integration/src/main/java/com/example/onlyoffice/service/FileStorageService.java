@@ -4,20 +4,35 @@ import com.example.onlyoffice.config.OnlyOfficeProperties;
 import com.example.onlyoffice.exception.FileNotFoundException;
 import com.example.onlyoffice.exception.FileStorageException;
 import com.example.onlyoffice.exception.InvalidFileException;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -34,12 +49,72 @@ import java.util.stream.Stream;
 @Service
 public class FileStorageService {
 
+    /**
+     * 流式写入缓冲区大小
+     */
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 计算摘要时每次映射的区段大小
+     */
+    private static final long MAP_REGION_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * 记录内容哈希的扩展属性名（Linux 上为 user.onlyoffice.sha256），值为 "修改时间:大小:sha256"
+     */
+    private static final String HASH_ATTRIBUTE = "onlyoffice.sha256";
+    private static final int HASH_ATTRIBUTE_SIZE = 128;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * 临时文件目录（存储目录下）：与文档分开存放，文档扫描只读取普通文件，任何文档名都不会被当作临时文件
+     */
+    static final String TEMP_DIR = ".tmp";
+
     private final OnlyOfficeProperties properties;
+    private final ServiceMetrics metrics;
     private Path uploadPath;
     private Set<String> allowedTypes;
+    private StorageLayout layout;
+    private DocumentIndex index;
+
+    /**
+     * 文件系统是否支持扩展属性（用于记录内容哈希）
+     */
+    private boolean hashAttributes;
 
-    public FileStorageService(OnlyOfficeProperties properties) {
+    /**
+     * 内容寻址存储，未启用去重时为 null
+     */
+    private BlobStore blobStore;
+
+    /**
+     * 文档修改锁：同一文档的提交、删除和上传文件名分配互斥
+     */
+    private DocumentLocks locks;
+
+    /**
+     * 保存文档时的刷盘
+     */
+    private StorageSync storageSync;
+
+    /**
+     * 已分配给进行中的 multipart 上传、尚未提交的文件名（清理后的文档 ID + "." + 类型）
+     */
+    private final Set<String> reservedFilenames = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 目录布局迁移状态
+     */
+    private final AtomicBoolean migrationRunning = new AtomicBoolean();
+    private final AtomicLong migrated = new AtomicLong();
+    private final AtomicLong migrationFailed = new AtomicLong();
+    private Thread migrationThread;
+
+    public FileStorageService(OnlyOfficeProperties properties, ServiceMetrics metrics) {
         this.properties = properties;
+        this.metrics = metrics;
     }
 
     /**
@@ -54,8 +129,10 @@ public class FileStorageService {
 
         // 创建目录（如果不存在）
         try {
-            Files.createDirectories(uploadPath);
-            log.info("文件存储目录初始化完成: {}", uploadPath);
+            Files.createDirectories(uploadPath.resolve(TEMP_DIR));
+            this.hashAttributes = Files.getFileStore(uploadPath)
+                    .supportsFileAttributeView(UserDefinedFileAttributeView.class);
+            log.info("文件存储目录初始化完成: {}, 扩展属性: {}", uploadPath, hashAttributes);
         } catch (IOException e) {
             throw new FileStorageException("无法创建上传目录: " + uploadPath, e);
         }
@@ -67,11 +144,69 @@ public class FileStorageService {
                 .collect(Collectors.toSet());
         
         log.info("允许的文件类型: {}", allowedTypes);
+
+        // 建立文档元数据索引
+        this.layout = new StorageLayout(uploadPath, properties.getStorage().getLayout());
+        this.index = new DocumentIndex(layout, properties.getStorage().getIndex());
+        index.start();
+        log.info("存储目录布局: {}", properties.getStorage().getLayout());
+
+        this.locks = new DocumentLocks(uploadPath, properties.getStorage().getLocks());
+        try {
+            locks.start();
+        } catch (IOException e) {
+            throw new FileStorageException("创建锁文件目录失败: " + uploadPath, e);
+        }
+        this.storageSync = new StorageSync(properties.getStorage(), metrics);
+        storageSync.start();
+
+        if (properties.getStorage().isDedup()) {
+            initBlobStore();
+        }
+
+        if (layout.isSharded() && properties.getStorage().isMigrateOnStartup()) {
+            startMigration();
+        }
+    }
+
+    /**
+     * 启用内容寻址存储（文件系统不支持硬链接时不启用）
+     */
+    private void initBlobStore() {
+        BlobStore store = new BlobStore(uploadPath);
+        try {
+            if (store.start()) {
+                this.blobStore = store;
+            }
+        } catch (IOException e) {
+            throw new FileStorageException("初始化内容寻址存储失败: " + uploadPath, e);
+        }
+    }
+
+    /**
+     * 停止监听存储目录和迁移
+     */
+    @PreDestroy
+    public void destroy() {
+        if (migrationThread != null) {
+            migrationThread.interrupt();
+        }
+        if (index != null) {
+            index.stop();
+        }
+        if (locks != null) {
+            locks.stop();
+        }
+        if (storageSync != null) {
+            storageSync.stop();
+        }
     }
 
     /**
      * 保存上传的文件
      * 
+     * 同名文件已存在或正在上传时文件名加上时间戳，同时上传的同名文件不会互相覆盖
+     * 
      * @param file 上传的文件
      * @return 保存后的文件名（不含扩展名）
      */
@@ -82,21 +217,36 @@ public class FileStorageService {
         // 验证文件
         validateFile(originalFilename, file.getSize());
 
+        // 生成安全的文件名
+        String safeFilename = generateSafeFilename(originalFilename);
+        String documentId = removeExtension(safeFilename);
+        String fileType = getExtension(safeFilename);
+        String reserved = sanitizeDocumentId(documentId) + "." + fileType;
+
         try {
-            // 生成安全的文件名
-            String safeFilename = generateSafeFilename(originalFilename);
-            Path targetPath = uploadPath.resolve(safeFilename);
-
-            // 保存文件
-            Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
-            
-            log.info("文件保存成功: {}", safeFilename);
-            
-            // 返回不含扩展名的文件名
-            return removeExtension(safeFilename);
-        } catch (IOException e) {
-            throw new FileStorageException("保存文件失败: " + originalFilename, e);
+            // 写入临时文件（同时计算 SHA-256）后原子替换
+            Path tempPath = createTempFile(documentId, fileType);
+            MessageDigest digest = sha256();
+            long start = System.nanoTime();
+            long size;
+            try (InputStream inputStream = file.getInputStream()) {
+                size = copyWithLimit(inputStream, tempPath, properties.getStorage().getMaxSize(), digest);
+            } catch (IOException | RuntimeException e) {
+                discardTempFile(tempPath);
+                if (e instanceof RuntimeException) {
+                    throw (RuntimeException) e;
+                }
+                throw new FileStorageException("保存文件失败: " + originalFilename, e);
+            }
+            metrics.storageWrite(start);
+            commitTempFile(tempPath, documentId, fileType, toHex(digest.digest()));
+            metrics.upload("multipart", size);
+        } finally {
+            reservedFilenames.remove(reserved);
         }
+        
+        // 返回不含扩展名的文件名
+        return documentId;
     }
 
     /**
@@ -105,36 +255,366 @@ public class FileStorageService {
      * @param inputStream 输入流
      * @param documentId 文档 ID
      * @param fileType 文件类型
+     * @return 保存结果
+     */
+    public SavedFile saveFromStream(InputStream inputStream, String documentId, String fileType) {
+        return saveFromStream(inputStream, documentId, fileType, -1);
+    }
+
+    /**
+     * 保存上传的文档内容（请求体直接写入存储目录）
+     * 
+     * 与 {@link #saveFile} 不同，数据不经过 multipart 临时文件，只写入一次；
+     * 同 ID 同类型的文档会被覆盖
+     * 
+     * @param inputStream 请求体
+     * @param documentId 文档 ID
+     * @param fileType 文件类型（必须是允许的类型）
+     * @param contentLength 内容长度（未知时传 -1）
+     * @return 保存结果
+     */
+    public SavedFile saveUpload(InputStream inputStream, String documentId, String fileType, long contentLength) {
+        validateUpload(documentId, fileType, Math.max(contentLength, 0));
+        SavedFile saved = saveFromStream(inputStream, documentId, fileType, contentLength);
+        metrics.upload("stream", saved.getSize());
+        return saved;
+    }
+
+    /**
+     * 检查上传的文档 ID、类型和大小
+     * 
+     * @param documentId 文档 ID
+     * @param fileType 文件类型（必须是允许的类型）
+     * @param size 文件大小
+     */
+    public void validateUpload(String documentId, String fileType, long size) {
+        String safeId = sanitizeDocumentId(documentId);
+        if (safeId == null) {
+            throw new InvalidFileException("无效的文档 ID: " + documentId);
+        }
+        validateFile(safeId + "." + fileType, size);
+    }
+
+    /**
+     * 从输入流保存文件（流式写入，内存占用恒定）
+     * 
+     * 数据直接写入临时文件，写入过程中检查大小限制，超限立即中止；
+     * 写入的同时计算 SHA-256，不再次读取文件
+     * 
+     * @param inputStream 输入流
+     * @param documentId 文档 ID
+     * @param fileType 文件类型
+     * @param contentLength 内容长度（未知时传 -1）
+     * @return 保存结果
      */
-    public void saveFromStream(InputStream inputStream, String documentId, String fileType) {
+    public SavedFile saveFromStream(InputStream inputStream, String documentId, String fileType, long contentLength) {
         // 验证文档 ID
         String safeId = sanitizeDocumentId(documentId);
         if (safeId == null) {
             throw new InvalidFileException("无效的文档 ID: " + documentId);
         }
 
-        String filename = safeId + "." + fileType;
-        Path targetPath = uploadPath.resolve(filename);
-        Path tempPath = uploadPath.resolve(safeId + "_temp_" + System.currentTimeMillis() + "." + fileType);
+        // 根据 Content-Length 提前检查大小
+        long maxSize = properties.getStorage().getMaxSize();
+        if (contentLength > maxSize) {
+            throw new InvalidFileException("文件大小超过限制: " + contentLength + " > " + maxSize);
+        }
 
+        JfrEvents.StorageWriteEvent event = new JfrEvents.StorageWriteEvent();
+        event.begin();
+        event.documentId = safeId;
+        event.fileType = fileType;
+        event.contentLength = contentLength;
         try {
-            // 先写入临时文件
-            Files.copy(inputStream, tempPath, StandardCopyOption.REPLACE_EXISTING);
-            
-            // 原子操作：移动临时文件覆盖原文件
-            Files.move(tempPath, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-            
+            Path tempPath = createTempFile(documentId, fileType);
+            MessageDigest digest = sha256();
+            long start = System.nanoTime();
+            long size;
+            try {
+                // 先写入临时文件
+                size = copyWithLimit(inputStream, tempPath, maxSize, digest);
+            } catch (IOException | RuntimeException e) {
+                discardTempFile(tempPath);
+                if (e instanceof RuntimeException) {
+                    throw (RuntimeException) e;
+                }
+                throw new FileStorageException("保存文件失败: " + safeId + "." + fileType, e);
+            }
+            event.size = size;
+
+            if (contentLength >= 0 && size != contentLength) {
+                // 请求体不完整（客户端中断）
+                discardTempFile(tempPath);
+                throw new InvalidFileException("文件内容不完整: " + size + " / " + contentLength);
+            }
+            long written = System.nanoTime();
+            metrics.storageWrite(start);
+            event.writeDuration = written - start;
+
+            String sha256 = toHex(digest.digest());
+            commitTempFile(tempPath, documentId, fileType, sha256);
+            event.commitDuration = System.nanoTime() - written;
+            event.success = true;
+            return new SavedFile(safeId + "." + fileType, size, sha256);
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * 在存储目录的临时文件目录中创建临时文件
+     * 
+     * 临时文件目录与目标文件在同一文件系统中，保证随后的移动是原子操作
+     * 
+     * @param documentId 文档 ID
+     * @param fileType 文件类型
+     * @return 临时文件路径
+     */
+    public Path createTempFile(String documentId, String fileType) {
+        String safeId = sanitizeDocumentId(documentId);
+        if (safeId == null) {
+            throw new InvalidFileException("无效的文档 ID: " + documentId);
+        }
+
+        try {
+            String tempName = safeId + "." + System.currentTimeMillis()
+                    + "_" + Long.toHexString(ThreadLocalRandom.current().nextLong()) + "." + fileType;
+            return Files.createFile(uploadPath.resolve(TEMP_DIR).resolve(tempName));
+        } catch (IOException e) {
+            throw new FileStorageException("创建临时文件失败: " + safeId + "." + fileType, e);
+        }
+    }
+
+    /**
+     * 提交临时文件：原子移动覆盖目标文件
+     * 
+     * 失败时删除临时文件
+     * 
+     * @param tempPath 临时文件路径（由 {@link #createTempFile} 创建）
+     * @param documentId 文档 ID
+     * @param fileType 文件类型
+     */
+    public void commitTempFile(Path tempPath, String documentId, String fileType) {
+        commitTempFile(tempPath, documentId, fileType, null);
+    }
+
+    /**
+     * 提交临时文件：原子移动覆盖目标文件
+     * 
+     * 内容的 SHA-256 记录在文件的扩展属性和文档索引中（用于生成文档 key，不再重新计算）；
+     * 启用去重时内容存入内容寻址存储，目标文件替换为指向它的硬链接；内容未变化时不修改目标文件。
+     * 替换和索引更新持有文档锁，与同一文档的其他提交和删除互斥。
+     * 按刷盘策略在替换前刷新临时文件内容、替换后刷新所在目录，返回时保存已持久化（刷盘不持有文档锁）
+     * 
+     * @param tempPath 临时文件路径（由 {@link #createTempFile} 创建）
+     * @param documentId 文档 ID
+     * @param fileType 文件类型
+     * @param sha256 临时文件内容的 SHA-256（未知时传 null，读取文件计算）
+     */
+    public void commitTempFile(Path tempPath, String documentId, String fileType, String sha256) {
+        long start = System.nanoTime();
+        sha256 = prepareTempFile(tempPath, sha256);
+        publishTempFile(tempPath, documentId, fileType, sha256);
+        syncDocumentDirectory(documentId, fileType);
+        metrics.storageCommit(start);
+    }
+
+    /**
+     * 提交的第一步（不持有文档锁）：记录内容的 SHA-256，按刷盘策略刷新临时文件内容
+     * 
+     * 失败时删除临时文件
+     * 
+     * @param tempPath 临时文件路径（由 {@link #createTempFile} 创建）
+     * @param sha256 临时文件内容的 SHA-256（未知时传 null，读取文件计算）
+     * @return 内容的 SHA-256
+     */
+    public String prepareTempFile(Path tempPath, String sha256) {
+        try {
+            if (sha256 == null) {
+                sha256 = sha256Of(tempPath);
+            }
+            writeHashAttribute(tempPath, sha256);
+            storageSync.syncFile(tempPath);
+            return sha256;
+        } catch (IOException | RuntimeException e) {
+            discardTempFile(tempPath);
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new FileStorageException("保存文件失败: " + tempPath.getFileName(), e);
+        }
+    }
+
+    /**
+     * 提交的第二步：持有文档锁替换目标文件并更新索引（不刷盘）
+     * 
+     * 需要与替换一起完成的操作可以在调用前持有 {@link #lockDocument}（可重入）；
+     * 失败时删除临时文件
+     * 
+     * @param tempPath 已准备的临时文件（{@link #prepareTempFile}）
+     * @param documentId 文档 ID
+     * @param fileType 文件类型
+     * @param sha256 内容的 SHA-256
+     */
+    public void publishTempFile(Path tempPath, String documentId, String fileType, String sha256) {
+        String safeId = sanitizeDocumentId(documentId);
+        if (safeId == null) {
+            discardTempFile(tempPath);
+            throw new InvalidFileException("无效的文档 ID: " + documentId);
+        }
+
+        String filename = safeId + "." + fileType;
+        try {
+            publish(tempPath, layout.pathOf(filename), filename, safeId, sha256);
             log.info("文件保存成功: {}", filename);
+        } catch (IOException | RuntimeException e) {
+            discardTempFile(tempPath);
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new FileStorageException("保存文件失败: " + filename, e);
+        }
+    }
+
+    /**
+     * 提交的最后一步（不持有文档锁）：按刷盘策略刷新文档所在目录，返回时保存已持久化
+     * 
+     * 去重时内容文件所在目录不刷新：文档的硬链接已持久化，内容不会丢失
+     * 
+     * @param documentId 文档 ID
+     * @param fileType 文件类型
+     */
+    public void syncDocumentDirectory(String documentId, String fileType) {
+        String safeId = sanitizeDocumentId(documentId);
+        if (safeId == null) {
+            throw new InvalidFileException("无效的文档 ID: " + documentId);
+        }
+        String filename = safeId + "." + fileType;
+        try {
+            storageSync.syncDirectory(layout.pathOf(filename).getParent());
         } catch (IOException e) {
-            // 清理临时文件
-            try {
-                Files.deleteIfExists(tempPath);
-            } catch (IOException ignored) {}
-            
             throw new FileStorageException("保存文件失败: " + filename, e);
         }
     }
 
+    /**
+     * 持有文档锁替换目标文件并更新索引
+     */
+    private void publish(Path tempPath, Path targetPath, String filename, String safeId,
+                         String sha256) throws IOException {
+        Path directory = targetPath.getParent();
+        if (!Files.isDirectory(directory)) {
+            // 分片目录尚未创建
+            Files.createDirectories(directory);
+        }
+        try (DocumentLocks.Handle lock = locks.lock(safeId)) {
+            if (blobStore != null) {
+                blobStore.publish(tempPath, targetPath, sha256);
+            } else {
+                // 原子操作：移动临时文件覆盖原文件
+                Files.move(tempPath, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            if (layout.isSharded()) {
+                // 未迁移的旧版本已被取代
+                deletePath(layout.legacyPathOf(filename));
+            }
+            DocumentIndex.Entry entry = index.refresh(filename);
+            if (entry != null) {
+                index.attachHash(entry, sha256);
+            }
+        }
+    }
+
+    /**
+     * 获取文档内容的 SHA-256
+     * 
+     * 依次使用索引中的值、文件扩展属性（写入时记录）、内容寻址存储；
+     * 都没有时（启用此功能前保存的文件、从备份恢复的文件）计算一次并记录
+     * 
+     * @param document 文档元数据
+     * @return SHA-256（十六进制）
+     */
+    public String contentHash(DocumentIndex.Entry document) {
+        if (document.getSha256() != null) {
+            return document.getSha256();
+        }
+        String sha256 = readHashAttribute(document);
+        try {
+            if (sha256 == null && blobStore != null) {
+                sha256 = blobStore.hashOf(document.getPath());
+            }
+        } catch (IOException e) {
+            log.debug("读取内容文件失败: {}, {}", document.getFilename(), e.getMessage());
+        }
+        if (sha256 == null) {
+            sha256 = sha256Of(document.getPath());
+            writeHashAttribute(document.getPath(), sha256);
+            log.debug("计算内容哈希: {}", document.getFilename());
+        }
+        index.attachHash(document, sha256);
+        return sha256;
+    }
+
+    /**
+     * 将 SHA-256 连同文件当前的修改时间和大小写入扩展属性
+     * 
+     * 读取时修改时间或大小不一致说明文件在外部被修改过，记录的值作废
+     */
+    private void writeHashAttribute(Path path, String sha256) {
+        if (!hashAttributes) {
+            return;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            String value = attributes.lastModifiedTime().toMillis() + ":" + attributes.size() + ":" + sha256;
+            UserDefinedFileAttributeView view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+            if (view != null) {
+                view.write(HASH_ATTRIBUTE, StandardCharsets.US_ASCII.encode(value));
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("写入内容哈希属性失败: {}, {}", path.getFileName(), e.getMessage());
+        }
+    }
+
+    /**
+     * 读取扩展属性中的 SHA-256
+     * 
+     * @return SHA-256，没有记录或已作废时返回 null
+     */
+    private String readHashAttribute(DocumentIndex.Entry document) {
+        if (!hashAttributes) {
+            return null;
+        }
+        try {
+            UserDefinedFileAttributeView view = Files.getFileAttributeView(
+                    document.getPath(), UserDefinedFileAttributeView.class);
+            ByteBuffer buffer = ByteBuffer.allocate(HASH_ATTRIBUTE_SIZE);
+            view.read(HASH_ATTRIBUTE, buffer);
+            buffer.flip();
+            String[] parts = StandardCharsets.US_ASCII.decode(buffer).toString().split(":");
+            if (parts.length == 3 && Long.parseLong(parts[0]) == document.getLastModified()
+                    && Long.parseLong(parts[1]) == document.getSize()) {
+                return parts[2];
+            }
+        } catch (IOException | RuntimeException e) {
+            // 没有记录或格式不正确
+        }
+        return null;
+    }
+
+    /**
+     * 删除临时文件
+     * 
+     * @param tempPath 临时文件路径
+     */
+    public void discardTempFile(Path tempPath) {
+        try {
+            Files.deleteIfExists(tempPath);
+        } catch (IOException e) {
+            log.warn("删除临时文件失败: {}", tempPath);
+        }
+    }
+
     /**
      * 获取文件路径
      * 
@@ -158,11 +638,36 @@ public class FileStorageService {
         }
 
         // 检查文件是否存在
-        if (!Files.exists(filePath)) {
+        DocumentIndex.Entry document = index.get(filename);
+        if (document == null) {
             throw new FileNotFoundException("文件不存在: " + filename);
         }
 
-        return filePath;
+        return document.getPath();
+    }
+
+    /**
+     * 获取文档元数据（来自内存索引）
+     * 
+     * @param documentId 文档 ID（不含扩展名）
+     * @param fileType 文件类型
+     * @return 元数据，文档不存在或 ID 无效时返回 null
+     */
+    public DocumentIndex.Entry getDocument(String documentId, String fileType) {
+        String safeId = sanitizeDocumentId(documentId);
+        if (safeId == null) {
+            return null;
+        }
+        return index.get(safeId + "." + fileType);
+    }
+
+    /**
+     * 获取文档元数据索引状态
+     * 
+     * @return 统计: size, missing
+     */
+    public Map<String, Integer> getIndexStats() {
+        return index.getStats();
     }
 
     /**
@@ -173,12 +678,11 @@ public class FileStorageService {
      * @return 最后修改时间戳（毫秒）
      */
     public long getLastModifiedTime(String documentId, String fileType) {
-        Path filePath = getFilePath(documentId, fileType);
-        try {
-            return Files.getLastModifiedTime(filePath).toMillis();
-        } catch (IOException e) {
-            throw new FileStorageException("获取文件修改时间失败", e);
+        DocumentIndex.Entry document = getDocument(documentId, fileType);
+        if (document == null) {
+            throw new FileNotFoundException("文件不存在: " + documentId + "." + fileType);
         }
+        return document.getLastModified();
     }
 
     /**
@@ -189,15 +693,7 @@ public class FileStorageService {
      * @return true 如果存在
      */
     public boolean fileExists(String documentId, String fileType) {
-        String safeId = sanitizeDocumentId(documentId);
-        if (safeId == null) {
-            return false;
-        }
-
-        String filename = safeId + "." + fileType;
-        Path filePath = uploadPath.resolve(filename).normalize();
-
-        return filePath.startsWith(uploadPath) && Files.exists(filePath);
+        return getDocument(documentId, fileType) != null;
     }
 
     /**
@@ -206,20 +702,41 @@ public class FileStorageService {
      * @return 文档 ID 列表
      */
     public List<String> listDocuments() {
-        try (Stream<Path> paths = Files.list(uploadPath)) {
-            return paths
-                    .filter(Files::isRegularFile)
-                    .map(path -> path.getFileName().toString())
-                    .filter(name -> !name.contains("_temp_"))
-                    .filter(name -> {
-                        String ext = getExtension(name).toLowerCase();
-                        return allowedTypes.contains(ext);
-                    })
-                    .map(this::removeExtension)
-                    .collect(Collectors.toList());
-        } catch (IOException e) {
-            throw new FileStorageException("获取文档列表失败", e);
-        }
+        return listDocuments(DocumentIndex.SortField.NAME, false, null, null)
+                .map(DocumentIndex.Entry::getId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 按指定顺序列出文档（来自内存索引，按需遍历）
+     * 
+     * @param sort 排序字段
+     * @param descending 是否倒序
+     * @param types 只列出这些类型（小写），null 或空表示所有允许的类型
+     * @param cursor 分页游标（{@link #nextCursor}），null 表示从头开始
+     * @return 文档流
+     */
+    public Stream<DocumentIndex.Entry> listDocuments(DocumentIndex.SortField sort,
+                                                     boolean descending,
+                                                     Set<String> types,
+                                                     String cursor) {
+        Set<String> filter = types == null || types.isEmpty() ? allowedTypes : types;
+        return index.list(sort, descending, cursor)
+                .filter(document -> {
+                    String type = document.getFileType().toLowerCase();
+                    return filter.contains(type) && allowedTypes.contains(type);
+                });
+    }
+
+    /**
+     * 生成下一页的分页游标
+     * 
+     * @param last 当前页最后一条
+     * @param sort 排序字段
+     * @return 游标
+     */
+    public String nextCursor(DocumentIndex.Entry last, DocumentIndex.SortField sort) {
+        return index.cursorOf(last, sort);
     }
 
     /**
@@ -229,26 +746,107 @@ public class FileStorageService {
      * @param fileType 文件类型
      */
     public void deleteFile(String documentId, String fileType) {
-        Path filePath = getFilePath(documentId, fileType);
-        try {
-            Files.deleteIfExists(filePath);
+        String safeId = sanitizeDocumentId(documentId);
+        if (safeId == null) {
+            throw new InvalidFileException("无效的文档 ID: " + documentId);
+        }
+        // 与同一文档的保存互斥：不会删除刚保存的新版本后又被索引记为存在
+        try (DocumentLocks.Handle lock = locks.lock(safeId)) {
+            Path filePath = getFilePath(documentId, fileType);
+            String filename = filePath.getFileName().toString();
+            deletePath(filePath);
+            if (layout.isSharded()) {
+                deletePath(layout.legacyPathOf(filename));
+            }
+            index.remove(filename);
             log.info("文件删除成功: {}.{}", documentId, fileType);
         } catch (IOException e) {
             throw new FileStorageException("删除文件失败", e);
         }
     }
 
+    /**
+     * 删除存储目录中指向文档内容的其他文件（如历史版本的硬链接），启用去重时释放其引用的内容
+     *
+     * @param path 文件路径，不存在时忽略
+     */
+    public void deleteLinkedFile(Path path) throws IOException {
+        deletePath(path);
+    }
+
+    /**
+     * 删除文档文件，启用去重时释放其引用的内容
+     */
+    private void deletePath(Path path) throws IOException {
+        if (blobStore == null) {
+            Files.deleteIfExists(path);
+            return;
+        }
+        Object fileKey = blobStore.fileKeyOf(path);
+        if (Files.deleteIfExists(path) && fileKey != null) {
+            blobStore.release(fileKey);
+        }
+    }
+
+    /**
+     * 锁定文档（与保存、删除互斥，同一线程可重入），用于需要与替换一起完成的操作（如保留历史版本）
+     * 
+     * @param documentId 文档 ID
+     * @return 已获得的锁，操作结束时关闭
+     */
+    public DocumentLocks.Handle lockDocument(String documentId) {
+        String safeId = sanitizeDocumentId(documentId);
+        if (safeId == null) {
+            throw new InvalidFileException("无效的文档 ID: " + documentId);
+        }
+        return locks.lock(safeId);
+    }
+
+    /**
+     * 获取文档锁状态
+     * 
+     * @return 统计: stripes, crossProcess, acquired, contended, timeouts
+     */
+    public Map<String, Object> getLockStats() {
+        return locks.getStats();
+    }
+
+    /**
+     * 获取刷盘状态
+     * 
+     * @return 统计: mode, fileSyncs, directorySyncs, batches, batchedSaves
+     */
+    public Map<String, Object> getFsyncStats() {
+        return storageSync.getStats();
+    }
+
+    /**
+     * 获取去重状态
+     * 
+     * @return 统计: enabled, blobs, hits, unchanged, released
+     */
+    public Map<String, Object> getDedupStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", blobStore != null);
+        if (blobStore != null) {
+            stats.putAll(blobStore.getStats());
+        }
+        return stats;
+    }
+
     /**
      * 生成文档下载 URL
      * 
+     * 指向下载接口 /api/files/{id}（支持条件请求和字节范围），/uploads/{文件名} 仍然可用
+     * 
      * @param documentId 文档 ID
      * @param fileType 文件类型
      * @return 下载 URL
      */
     public String generateDownloadUrl(String documentId, String fileType) {
-        String encodedFilename = URLEncoder.encode(documentId + "." + fileType, StandardCharsets.UTF_8)
-                .replace("+", "%20");
-        return properties.getBackend().getCallbackUrl() + "/uploads/" + encodedFilename;
+        String encodedId = URLEncoder.encode(documentId, StandardCharsets.UTF_8).replace("+", "%20");
+        String encodedType = URLEncoder.encode(fileType, StandardCharsets.UTF_8);
+        return properties.getBackend().getCallbackUrl() + "/api/files/" + encodedId + "?fileType=" + encodedType;
     }
 
     /**
@@ -305,21 +903,173 @@ public class FileStorageService {
     }
 
     /**
-     * 生成安全的文件名
+     * 生成安全的文件名并预留（上传结束后从 {@link #reservedFilenames} 移除）
+     * 
+     * 检查和预留持有文档锁，同时上传的同名文件分到不同的文件名
      */
     private String generateSafeFilename(String originalFilename) {
         // 移除路径分隔符
         String filename = originalFilename.replace("/", "").replace("\\", "");
+        String name = removeExtension(filename);
+        String ext = getExtension(filename);
         
-        // 如果文件已存在，添加时间戳
-        Path targetPath = uploadPath.resolve(filename);
-        if (Files.exists(targetPath)) {
-            String name = removeExtension(filename);
-            String ext = getExtension(filename);
-            filename = name + "_" + System.currentTimeMillis() + "." + ext;
+        // 如果文件已存在或正在上传，添加时间戳（同一毫秒内再加序号）
+        for (int attempt = 0; ; attempt++) {
+            String candidate = attempt == 0 ? filename
+                    : name + "_" + System.currentTimeMillis() + (attempt > 1 ? "_" + attempt : "") + "." + ext;
+            String safeId = sanitizeDocumentId(removeExtension(candidate));
+            if (safeId == null) {
+                throw new InvalidFileException("无效的文件名: " + originalFilename);
+            }
+            String safeFilename = safeId + "." + ext;
+            try (DocumentLocks.Handle lock = locks.lock(safeId)) {
+                if (index.get(safeFilename) == null && reservedFilenames.add(safeFilename)) {
+                    return candidate;
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取目录布局迁移状态
+     * 
+     * @return 统计: running, migrated, failed
+     */
+    public Map<String, Object> getMigrationStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", migrationRunning.get());
+        stats.put("migrated", migrated.get());
+        stats.put("failed", migrationFailed.get());
+        return stats;
+    }
+
+    /**
+     * 在后台将存储目录根下的旧文件迁移到分片目录
+     * 
+     * 每个文件先在分片目录建立硬链接，再删除旧路径，任一时刻文件都可以通过其中一个路径访问；
+     * 中途停止后下次启动会继续迁移剩余文件
+     */
+    private void startMigration() {
+        migrationThread = new Thread(this::migrate, "storage-migration");
+        migrationThread.setDaemon(true);
+        migrationThread.start();
+    }
+
+    private void migrate() {
+        migrationRunning.set(true);
+        long start = System.currentTimeMillis();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(uploadPath)) {
+            for (Path source : stream) {
+                if (Thread.currentThread().isInterrupted()) {
+                    log.info("存储目录迁移已中止，已迁移 {} 个文件", migrated.get());
+                    return;
+                }
+                String filename = source.getFileName().toString();
+                if (!Files.isRegularFile(source)) {
+                    continue;
+                }
+                try {
+                    migrateFile(source, filename);
+                    migrated.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    migrationFailed.incrementAndGet();
+                    log.warn("迁移文件失败: {}, {}", filename, e.getMessage());
+                }
+            }
+            if (migrated.get() > 0 || migrationFailed.get() > 0) {
+                log.info("存储目录迁移完成: 迁移 {} 个文件, 失败 {} 个, 耗时 {}ms",
+                        migrated.get(), migrationFailed.get(), System.currentTimeMillis() - start);
+            }
+        } catch (IOException e) {
+            log.error("存储目录迁移失败", e);
+        } finally {
+            migrationRunning.set(false);
+        }
+    }
+
+    private void migrateFile(Path source, String filename) throws IOException {
+        Path target = layout.pathOf(filename);
+        Files.createDirectories(target.getParent());
+        try (DocumentLocks.Handle lock = locks.lock(removeExtension(filename))) {
+            try {
+                Files.createLink(target, source);
+            } catch (FileAlreadyExistsException e) {
+                // 分片目录中已有更新的版本（或上次迁移中断于删除之前）
+            } catch (UnsupportedOperationException e) {
+                // 不支持硬链接的文件系统，同一文件系统内的移动也是原子的
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+                index.refresh(filename);
+                return;
+            }
+            Files.deleteIfExists(source);
+            index.refresh(filename);
+        }
+    }
+
+    /**
+     * 将输入流写入文件，超过大小限制时中止
+     * 
+     * @param digest 同时计算摘要
+     * @return 写入的字节数
+     */
+    private long copyWithLimit(InputStream inputStream, Path target, long maxSize,
+                               MessageDigest digest) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long total = 0;
+        try (OutputStream out = Files.newOutputStream(target)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                total += read;
+                if (total > maxSize) {
+                    throw new InvalidFileException("文件大小超过限制: > " + maxSize);
+                }
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 计算文件内容的 SHA-256
+     * 
+     * 按区段内存映射文件，直接从页缓存计算，不复制到堆内存
+     * 
+     * @param path 文件路径
+     * @return SHA-256（十六进制）
+     */
+    public String sha256Of(Path path) {
+        MessageDigest digest = sha256();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAP_REGION_SIZE) {
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAP_REGION_SIZE, size - position)));
+            }
+        } catch (IOException e) {
+            throw new FileStorageException("读取文件失败: " + path.getFileName(), e);
+        }
+        return toHex(digest.digest());
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("不支持 SHA-256", e);
         }
-        
-        return filename;
+    }
+
+    /**
+     * 字节数组转十六进制字符串
+     */
+    static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(chars);
     }
 
     /**
@@ -344,4 +1094,25 @@ public class FileStorageService {
     public Path getUploadPath() {
         return uploadPath;
     }
+
+    /**
+     * 保存结果
+     */
+    @Value
+    public static class SavedFile {
+        /**
+         * 文件名
+         */
+        String filename;
+
+        /**
+         * 文件大小（字节）
+         */
+        long size;
+
+        /**
+         * 内容的 SHA-256（十六进制）
+         */
+        String sha256;
+    }
 }
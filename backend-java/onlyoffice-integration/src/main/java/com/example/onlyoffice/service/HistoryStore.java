@@ -0,0 +1,564 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.dto.CallbackDTO;
+import com.example.onlyoffice.exception.FileNotFoundException;
+import com.example.onlyoffice.exception.FileStorageException;
+import com.example.onlyoffice.exception.InvalidFileException;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 文档版本历史
+ *
+ * 每次最终保存（status 2）生成一个版本：被替换的当前版本移入历史目录（能建立硬链接时不复制数据），
+ * 回调中的变更记录（changesurl 指向的 zip）和变更历史（history）随新版本保存。存储目录中只保留当前版本
+ *
+ * 每个文档的历史位于 {历史目录}/{文档 ID}.{类型}/：
+ * manifest.json 为版本清单，{版本号}.{类型} 为历史版本内容，{版本号}.zip 为该版本的变更记录。
+ * 版本清单缓存在内存中，获取版本列表和下载地址不扫描目录
+ *
+ * 版本的增加、清理和删除持有文档锁（见 {@link DocumentLocks}），与同一文档的保存和删除互斥
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class HistoryStore {
+
+    private static final String MANIFEST = "manifest.json";
+    private static final String CHANGES_EXTENSION = ".zip";
+
+    private final OnlyOfficeProperties.History config;
+    private final FileStorageService fileStorageService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 历史版本目录，未启用时为 null
+     */
+    private Path historyPath;
+
+    /**
+     * 版本清单缓存: 文件名 -> 版本列表（不可修改，更新时整体替换；按访问顺序淘汰）
+     */
+    private final Map<String, List<Version>> manifests;
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong pruned = new AtomicLong();
+
+    public HistoryStore(OnlyOfficeProperties properties, FileStorageService fileStorageService,
+                        ObjectMapper objectMapper) {
+        this.config = properties.getHistory();
+        this.fileStorageService = fileStorageService;
+        this.objectMapper = objectMapper;
+        int cacheSize = Math.max(1, config.getManifestCacheSize());
+        this.manifests = Collections.synchronizedMap(new LinkedHashMap<String, List<Version>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Version>> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * 创建历史版本目录
+     */
+    @PostConstruct
+    public void init() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        Path path = Paths.get(config.getDir()).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(path);
+        } catch (IOException e) {
+            throw new FileStorageException("无法创建历史版本目录: " + path, e);
+        }
+        this.historyPath = path;
+        log.info("版本历史目录: {}, 最多保留 {} 个版本, {} 天", path, config.getMaxVersions(), config.getMaxAge());
+    }
+
+    /**
+     * 是否保留历史版本
+     */
+    public boolean isEnabled() {
+        return historyPath != null;
+    }
+
+    /**
+     * 在文档的历史目录中创建临时文件，用于下载变更记录
+     *
+     * @param documentId 文档 ID
+     * @param fileType 文件类型
+     * @return 临时文件路径（由 {@link #commitVersion} 移动到位，失败时由调用方删除）
+     */
+    public Path createChangesTempFile(String documentId, String fileType) {
+        Path directory = directoryOf(documentId, fileType);
+        try {
+            Files.createDirectories(directory);
+            return Files.createTempFile(directory, "changes-", CHANGES_EXTENSION);
+        } catch (IOException e) {
+            throw new FileStorageException("创建临时文件失败: " + directory.getFileName(), e);
+        }
+    }
+
+    /**
+     * 提交新版本：保留当前版本，替换为临时文件，记录新版本
+     *
+     * 内容与当前版本相同时只替换（不生成版本）；保留历史失败时记录错误，文档仍然保存。
+     * 文档锁只覆盖归档、替换和版本清单更新，刷盘在锁外进行
+     *
+     * @param documentId 文档 ID
+     * @param fileType 文件类型
+     * @param tempPath 新版本的临时文件（由 {@link FileStorageService#createTempFile} 创建）
+     * @param sha256 临时文件内容的 SHA-256（下载时计算），未知时传 null
+     * @param changesPath 变更记录临时文件（由 {@link #createChangesTempFile} 创建），没有时传 null
+     * @param callback 回调数据（变更历史、用户）
+     */
+    public void commitVersion(String documentId, String fileType, Path tempPath, String sha256, Path changesPath,
+                              CallbackDTO callback) {
+        Path directory = directoryOf(documentId, fileType);
+        String filename = directory.getFileName().toString();
+        sha256 = fileStorageService.prepareTempFile(tempPath, sha256);
+
+        try (DocumentLocks.Handle lock = fileStorageService.lockDocument(documentId)) {
+            // 为 null 时本次保存不记录版本（不会覆盖已有的版本文件）
+            List<Version> versions;
+            try {
+                versions = new ArrayList<>(load(filename, directory));
+            } catch (FileStorageException e) {
+                versions = null;
+                log.error("{}, 本次保存不记录版本", e.getMessage());
+            }
+
+            DocumentIndex.Entry current = fileStorageService.getDocument(documentId, fileType);
+            if (current != null) {
+                String currentHash = fileStorageService.contentHash(current);
+                if (currentHash.equals(sha256)) {
+                    // 内容未变化：只替换，不生成版本
+                    versions = null;
+                } else if (versions != null) {
+                    try {
+                        archiveCurrent(current, currentHash, directory, fileType, versions);
+                    } catch (IOException e) {
+                        versions = null;
+                        log.error("保留历史版本失败: {}, {}", filename, e.getMessage());
+                    }
+                }
+            }
+
+            fileStorageService.publishTempFile(tempPath, documentId, fileType, sha256);
+
+            if (versions != null) {
+                try {
+                    addVersion(documentId, fileType, directory, versions, sha256, changesPath, callback);
+                } catch (IOException | RuntimeException e) {
+                    log.error("记录新版本失败: {}, {}", filename, e.getMessage());
+                }
+            }
+        }
+
+        fileStorageService.syncDocumentDirectory(documentId, fileType);
+    }
+
+    /**
+     * 获取文档的版本列表（按版本号升序，最后一个为当前版本）
+     *
+     * 没有历史（尚未保存过）或文档在外部被替换过时，当前文档作为最新的一个版本列出
+     *
+     * @param documentId 文档 ID
+     * @param fileType 文件类型
+     * @return 版本列表，文档不存在时为空
+     */
+    public List<Version> getVersions(String documentId, String fileType) {
+        DocumentIndex.Entry current = fileStorageService.getDocument(documentId, fileType);
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        List<Version> versions = isEnabled() ? cached(documentId, fileType) : Collections.emptyList();
+        String currentHash = fileStorageService.contentHash(current);
+        Version latest = versions.isEmpty() ? null : versions.get(versions.size() - 1);
+        if (latest != null && currentHash.equals(latest.getSha256())) {
+            return versions;
+        }
+        List<Version> result = new ArrayList<>(versions);
+        result.add(Version.of(latest == null ? 1 : latest.getVersion() + 1, currentHash,
+                current.getLastModified(), current.getSize()));
+        return result;
+    }
+
+    /**
+     * 获取版本内容文件
+     *
+     * @param documentId 文档 ID
+     * @param fileType 文件类型
+     * @param version 版本号
+     * @return 文件路径（当前版本为存储目录中的文档）
+     * @throws FileNotFoundException 版本不存在或已被清理
+     */
+    public Path getVersionFile(String documentId, String fileType, int version) {
+        List<Version> versions = getVersions(documentId, fileType);
+        if (!versions.isEmpty() && versions.get(versions.size() - 1).getVersion() == version) {
+            return fileStorageService.getFilePath(documentId, fileType);
+        }
+        if (isEnabled() && find(versions, version) != null) {
+            Path path = versionPath(directoryOf(documentId, fileType), version, fileType);
+            if (Files.exists(path)) {
+                return path;
+            }
+        }
+        throw new FileNotFoundException("版本不存在: " + documentId + "." + fileType + " v" + version);
+    }
+
+    /**
+     * 是否为历史目录中的文件（已归档的版本和变更记录不会再变化；当前版本和外部替换后的版本不是）
+     *
+     * @param path {@link #getVersionFile} 或 {@link #getChangesFile} 返回的路径
+     */
+    public boolean isArchived(Path path) {
+        return isEnabled() && path.toAbsolutePath().normalize().startsWith(historyPath);
+    }
+
+    /**
+     * 获取版本的变更记录（zip）
+     *
+     * @param documentId 文档 ID
+     * @param fileType 文件类型
+     * @param version 版本号
+     * @return 文件路径
+     * @throws FileNotFoundException 该版本没有变更记录
+     */
+    public Path getChangesFile(String documentId, String fileType, int version) {
+        if (isEnabled()) {
+            Version entry = find(cached(documentId, fileType), version);
+            if (entry != null && entry.isChangesFile()) {
+                Path path = changesPath(directoryOf(documentId, fileType), version);
+                if (Files.exists(path)) {
+                    return path;
+                }
+            }
+        }
+        throw new FileNotFoundException("变更记录不存在: " + documentId + "." + fileType + " v" + version);
+    }
+
+    /**
+     * 删除文档的全部历史
+     *
+     * @param documentId 文档 ID
+     * @param fileType 文件类型
+     */
+    public void delete(String documentId, String fileType) {
+        if (!isEnabled()) {
+            return;
+        }
+        Path directory = directoryOf(documentId, fileType);
+        try (DocumentLocks.Handle lock = fileStorageService.lockDocument(documentId)) {
+            manifests.remove(directory.getFileName().toString());
+            if (!Files.exists(directory)) {
+                return;
+            }
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Iterator<Path> it = paths.sorted(Comparator.reverseOrder()).iterator(); it.hasNext(); ) {
+                    // 版本文件可能是内容文件的硬链接，需要释放引用
+                    fileStorageService.deleteLinkedFile(it.next());
+                }
+            }
+            log.info("删除版本历史: {}", directory.getFileName());
+        } catch (IOException e) {
+            throw new FileStorageException("删除版本历史失败: " + directory.getFileName(), e);
+        }
+    }
+
+    /**
+     * 获取版本历史状态
+     *
+     * @return 统计: enabled, cachedManifests, recorded（生成的版本数）, pruned（清理的版本数）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("cachedManifests", manifests.size());
+        stats.put("recorded", recorded.get());
+        stats.put("pruned", pruned.get());
+        return stats;
+    }
+
+    /**
+     * 当前版本即将被替换，在历史目录中保留一份
+     *
+     * 首次保存（上传的原始版本）或文档在外部被替换过时，先把当前文档记为一个版本
+     */
+    private void archiveCurrent(DocumentIndex.Entry current, String currentHash, Path directory, String fileType,
+                                List<Version> versions) throws IOException {
+        Version latest = versions.isEmpty() ? null : versions.get(versions.size() - 1);
+        if (latest == null || !currentHash.equals(latest.getSha256())) {
+            latest = Version.of(latest == null ? 1 : latest.getVersion() + 1, currentHash,
+                    current.getLastModified(), current.getSize());
+            versions.add(latest);
+        }
+        Files.createDirectories(directory);
+        Path target = versionPath(directory, latest.getVersion(), fileType);
+        fileStorageService.deleteLinkedFile(target);
+        try {
+            // 替换是重命名，硬链接保留的是被替换前的内容
+            Files.createLink(target, current.getPath());
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // 不支持硬链接或历史目录在其他文件系统上
+            Files.copy(current.getPath(), target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 记录新版本（当前版本），移入变更记录，按保留策略清理后写入版本清单
+     */
+    private void addVersion(String documentId, String fileType, Path directory, List<Version> versions,
+                            String sha256, Path changesPath, CallbackDTO callback) throws IOException {
+        String filename = directory.getFileName().toString();
+        Version latest = versions.isEmpty() ? null : versions.get(versions.size() - 1);
+        Version version = new Version();
+        version.setVersion(latest == null ? 1 : latest.getVersion() + 1);
+        version.setSha256(sha256);
+        version.setCreated(System.currentTimeMillis());
+        DocumentIndex.Entry saved = fileStorageService.getDocument(documentId, fileType);
+        version.setSize(saved != null ? saved.getSize() : 0);
+        if (callback.getHistory() != null) {
+            version.setServerVersion(callback.getHistory().getServerVersion());
+            version.setChanges(callback.getHistory().getChanges());
+        }
+        CallbackDTO.User user = lastUser(callback);
+        if (user != null) {
+            version.setUserId(EditSessionRegistry.userIdOf(user.getId()));
+            version.setUserName(user.getName());
+        }
+
+        Files.createDirectories(directory);
+        if (changesPath != null && Files.exists(changesPath)) {
+            Files.move(changesPath, changesPath(directory, version.getVersion()),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            version.setChangesFile(true);
+        }
+        versions.add(version);
+
+        prune(directory, fileType, versions);
+        save(filename, directory, versions);
+        recorded.incrementAndGet();
+        log.info("记录新版本: {} v{}", filename, version.getVersion());
+    }
+
+    /**
+     * 按保留策略删除最旧的版本（当前版本始终保留）
+     */
+    private void prune(Path directory, String fileType, List<Version> versions) throws IOException {
+        long expireBefore = config.getMaxAge() > 0
+                ? System.currentTimeMillis() - TimeUnit.DAYS.toMillis(config.getMaxAge())
+                : Long.MIN_VALUE;
+        while (versions.size() > 1) {
+            Version oldest = versions.get(0);
+            boolean tooMany = config.getMaxVersions() > 0 && versions.size() > config.getMaxVersions();
+            if (!tooMany && oldest.getCreated() >= expireBefore) {
+                break;
+            }
+            versions.remove(0);
+            // 版本文件可能是内容文件的硬链接（归档时链接的当前文档），删除后释放引用
+            fileStorageService.deleteLinkedFile(versionPath(directory, oldest.getVersion(), fileType));
+            Files.deleteIfExists(changesPath(directory, oldest.getVersion()));
+            pruned.incrementAndGet();
+        }
+    }
+
+    /**
+     * 从缓存获取版本清单，未缓存时持有文档锁读取
+     */
+    private List<Version> cached(String documentId, String fileType) {
+        Path directory = directoryOf(documentId, fileType);
+        String filename = directory.getFileName().toString();
+        List<Version> versions = manifests.get(filename);
+        if (versions != null) {
+            return versions;
+        }
+        try (DocumentLocks.Handle lock = fileStorageService.lockDocument(documentId)) {
+            return load(filename, directory);
+        }
+    }
+
+    /**
+     * 读取版本清单（调用方持有文档锁）
+     */
+    private List<Version> load(String filename, Path directory) {
+        List<Version> versions = manifests.get(filename);
+        if (versions != null) {
+            return versions;
+        }
+        try {
+            Manifest manifest = objectMapper.readValue(directory.resolve(MANIFEST).toFile(), Manifest.class);
+            versions = Collections.unmodifiableList(new ArrayList<>(manifest.getVersions()));
+        } catch (NoSuchFileException | java.io.FileNotFoundException e) {
+            versions = Collections.emptyList();
+        } catch (IOException e) {
+            throw new FileStorageException("读取版本清单失败: " + filename, e);
+        }
+        manifests.put(filename, versions);
+        return versions;
+    }
+
+    /**
+     * 写入版本清单（写入临时文件后原子替换）并更新缓存
+     */
+    private void save(String filename, Path directory, List<Version> versions) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.setFilename(filename);
+        manifest.setVersions(versions);
+        Path tempPath = Files.createTempFile(directory, "manifest-", ".json");
+        try {
+            objectMapper.writeValue(tempPath.toFile(), manifest);
+            Files.move(tempPath, directory.resolve(MANIFEST),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+        manifests.put(filename, Collections.unmodifiableList(new ArrayList<>(versions)));
+    }
+
+    /**
+     * 文档的历史目录
+     */
+    private Path directoryOf(String documentId, String fileType) {
+        if (!isEnabled()) {
+            throw new FileStorageException("未启用版本历史");
+        }
+        String safeId = fileStorageService.sanitizeDocumentId(documentId);
+        if (safeId == null) {
+            throw new InvalidFileException("无效的文档 ID: " + documentId);
+        }
+        Path directory = historyPath.resolve(safeId + "." + fileType).normalize();
+        if (!historyPath.equals(directory.getParent())) {
+            throw new InvalidFileException("非法的文件路径: " + documentId + "." + fileType);
+        }
+        return directory;
+    }
+
+    private static Path versionPath(Path directory, int version, String fileType) {
+        return directory.resolve(version + "." + fileType);
+    }
+
+    private static Path changesPath(Path directory, int version) {
+        return directory.resolve(version + CHANGES_EXTENSION);
+    }
+
+    private static Version find(List<Version> versions, int version) {
+        for (Version entry : versions) {
+            if (entry.getVersion() == version) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 本次保存的用户：变更历史中的最后一条，没有时取当前编辑用户中的第一个
+     */
+    private static CallbackDTO.User lastUser(CallbackDTO callback) {
+        if (callback.getHistory() != null && callback.getHistory().getChanges() != null
+                && !callback.getHistory().getChanges().isEmpty()) {
+            List<CallbackDTO.Change> changes = callback.getHistory().getChanges();
+            return changes.get(changes.size() - 1).getUser();
+        }
+        if (callback.getUsers() != null && !callback.getUsers().isEmpty()) {
+            CallbackDTO.User user = new CallbackDTO.User();
+            user.setId(callback.getUsers().get(0));
+            return user;
+        }
+        return null;
+    }
+
+    /**
+     * 版本清单文件
+     */
+    @Data
+    @NoArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Manifest {
+        private String filename;
+        private List<Version> versions = new ArrayList<>();
+    }
+
+    /**
+     * 版本
+     */
+    @Data
+    @NoArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Version {
+        /**
+         * 版本号（从 1 开始）
+         */
+        private int version;
+
+        /**
+         * 内容的 SHA-256（用于生成该版本的文档 key）
+         */
+        private String sha256;
+
+        /**
+         * 保存时间（毫秒）
+         */
+        private long created;
+
+        private long size;
+
+        /**
+         * 保存该版本的用户
+         */
+        private String userId;
+        private String userName;
+
+        /**
+         * 文档服务器版本（回调 history.serverVersion）
+         */
+        private String serverVersion;
+
+        /**
+         * 变更历史（回调 history.changes）
+         */
+        private List<CallbackDTO.Change> changes;
+
+        /**
+         * 是否保存了变更记录（changesurl 指向的 zip）
+         */
+        private boolean changesFile;
+
+        static Version of(int number, String sha256, long created, long size) {
+            Version version = new Version();
+            version.setVersion(number);
+            version.setSha256(sha256);
+            version.setCreated(created);
+            version.setSize(size);
+            return version;
+        }
+    }
+}
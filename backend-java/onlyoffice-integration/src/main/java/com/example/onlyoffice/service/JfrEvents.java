@@ -0,0 +1,141 @@
+package com.example.onlyoffice.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder 事件
+ *
+ * 回调处理、回调文档保存、存储写入和 JWT 验证各阶段的耗时。没有正在进行的录制时
+ * 事件只是一个未提交的对象；线上可以常驻一个低开销录制（见 README），出问题时导出后用 JMC 分析
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+public final class JfrEvents {
+
+    private static final String CATEGORY = "ONLYOFFICE";
+
+    private JfrEvents() {
+    }
+
+    /**
+     * 处理一次 ONLYOFFICE 回调（同步保存时含下载和保存）
+     */
+    @Name("com.example.onlyoffice.Callback")
+    @Label("Callback")
+    @Description("处理 ONLYOFFICE 回调")
+    @Category({CATEGORY, "Callback"})
+    @StackTrace(false)
+    public static class CallbackEvent extends Event {
+
+        @Label("Document Key")
+        public String key;
+
+        @Label("Status")
+        public int status;
+
+        @Label("Async Save")
+        @Description("写入回调日志后由后台线程保存")
+        public boolean async;
+
+        @Label("JWT Verify")
+        @Timespan(Timespan.NANOSECONDS)
+        public long verifyDuration;
+    }
+
+    /**
+     * 下载并保存回调文档
+     */
+    @Name("com.example.onlyoffice.Save")
+    @Label("Document Save")
+    @Description("下载并保存回调文档")
+    @Category({CATEGORY, "Callback"})
+    @StackTrace(false)
+    public static class SaveEvent extends Event {
+
+        @Label("Document ID")
+        public String documentId;
+
+        @Label("File Type")
+        public String fileType;
+
+        @Label("Size")
+        @DataAmount
+        public long size;
+
+        @Label("Download")
+        @Timespan(Timespan.NANOSECONDS)
+        public long downloadDuration;
+
+        @Label("Commit")
+        @Description("原子替换目标文件（含去重和索引更新）")
+        @Timespan(Timespan.NANOSECONDS)
+        public long commitDuration;
+
+        @Label("Success")
+        public boolean success;
+    }
+
+    /**
+     * 流式写入文档
+     */
+    @Name("com.example.onlyoffice.StorageWrite")
+    @Label("Storage Write")
+    @Description("流式写入文档（写入临时文件后原子替换）")
+    @Category({CATEGORY, "Storage"})
+    @StackTrace(false)
+    public static class StorageWriteEvent extends Event {
+
+        @Label("Document ID")
+        public String documentId;
+
+        @Label("File Type")
+        public String fileType;
+
+        @Label("Expected Size")
+        @Description("Content-Length，未知时为 -1")
+        @DataAmount
+        public long contentLength;
+
+        @Label("Size")
+        @DataAmount
+        public long size;
+
+        @Label("Write")
+        @Timespan(Timespan.NANOSECONDS)
+        public long writeDuration;
+
+        @Label("Commit")
+        @Timespan(Timespan.NANOSECONDS)
+        public long commitDuration;
+
+        @Label("Success")
+        public boolean success;
+    }
+
+    /**
+     * 验证 JWT（调用频繁，默认只记录超过 1 毫秒的）
+     */
+    @Name("com.example.onlyoffice.JwtVerify")
+    @Label("JWT Verify")
+    @Description("验证 JWT Token")
+    @Category({CATEGORY, "JWT"})
+    @StackTrace(false)
+    @Threshold("1 ms")
+    public static class JwtVerifyEvent extends Event {
+
+        @Label("Token Length")
+        public int tokenLength;
+
+        @Label("Success")
+        public boolean success;
+    }
+}
@@ -1,27 +1,33 @@
 package com.example.onlyoffice.service;
 
 import com.example.onlyoffice.config.OnlyOfficeProperties;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.util.Base64;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
  * JWT 服务类
- * 
+ *
  * 负责 JWT Token 的生成和验证
  * 用于 ONLYOFFICE 与后端之间的安全通信
- * 
+ *
  * 注意：使用手动实现以支持任意长度的密钥，与 ONLYOFFICE 保持兼容
- * 
+ *
+ * 每个线程复用已初始化的 Mac，Header 预先编码，
+ * Payload 一次序列化为 UTF-8 字节，签名按字节以常量时间比较
+ *
  * @author Your Name
  * @version 1.0.0
  */
@@ -29,13 +35,36 @@ import java.util.Map;
 @Service
 public class JwtService {
 
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * HS256 签名长度（字节）
+     */
+    private static final int SIGNATURE_LENGTH = 32;
+
+    /**
+     * 预先编码的 Header: {"alg":"HS256","typ":"JWT"}
+     */
+    private static final byte[] HEADER_SEGMENT = Base64.getUrlEncoder().withoutPadding()
+            .encode("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+
+    private static final Base64.Encoder BASE64_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder BASE64_DECODER = Base64.getUrlDecoder();
+
     private final OnlyOfficeProperties properties;
     private final ObjectMapper objectMapper;
-    private byte[] secretKeyBytes;
+    private final ServiceMetrics metrics;
+    private SecretKeySpec keySpec;
+
+    /**
+     * 每个线程一个已初始化的 Mac（Mac 不是线程安全的）
+     */
+    private ThreadLocal<Mac> macs;
 
-    public JwtService(OnlyOfficeProperties properties, ObjectMapper objectMapper) {
+    public JwtService(OnlyOfficeProperties properties, ObjectMapper objectMapper, ServiceMetrics metrics) {
         this.properties = properties;
         this.objectMapper = objectMapper;
+        this.metrics = metrics;
     }
 
     /**
@@ -44,25 +73,29 @@ public class JwtService {
     @PostConstruct
     public void init() {
         String secret = properties.getJwt().getSecret();
-        this.secretKeyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        this.keySpec = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        // 提前检查密钥，避免首次签名时才失败
+        Mac prototype = newMac();
+        this.macs = ThreadLocal.withInitial(() -> cloneMac(prototype));
         log.info("JWT 服务初始化完成");
     }
 
     /**
      * 为对象生成 JWT Token
-     * 
-     * @param payload 要签名的对象
+     *
+     * 对象的属性作为 claims，并添加 iat 和 exp
+     *
+     * @param payload 要签名的对象（序列化后必须是 JSON 对象）
      * @return JWT Token 字符串
      */
     public String createToken(Object payload) {
+        long start = System.nanoTime();
         try {
-            // 将对象转换为 Map
-            String json = objectMapper.writeValueAsString(payload);
-            @SuppressWarnings("unchecked")
-            Map<String, Object> claims = objectMapper.readValue(json, Map.class);
-            
-            return createToken(claims);
-        } catch (JsonProcessingException e) {
+            String token = sign(serializeClaims(payload));
+            metrics.jwtCreate(true, start);
+            return token;
+        } catch (Exception e) {
+            metrics.jwtCreate(false, start);
             log.error("创建 JWT Token 失败: {}", e.getMessage());
             throw new RuntimeException("创建 JWT Token 失败", e);
         }
@@ -70,71 +103,50 @@ public class JwtService {
 
     /**
      * 为 Map 生成 JWT Token（手动实现，支持任意长度密钥）
-     * 
+     *
      * @param claims 要签名的数据
      * @return JWT Token 字符串
      */
     public String createToken(Map<String, Object> claims) {
-        try {
-            // 添加 iat 和 exp
-            long now = System.currentTimeMillis() / 1000;
-            long exp = now + properties.getJwt().getExpiresIn();
-            
-            Map<String, Object> fullClaims = new HashMap<>(claims);
-            fullClaims.put("iat", now);
-            fullClaims.put("exp", exp);
-            
-            // Header
-            Map<String, String> header = new HashMap<>();
-            header.put("alg", "HS256");
-            header.put("typ", "JWT");
-            
-            // Base64Url 编码
-            String headerJson = objectMapper.writeValueAsString(header);
-            String payloadJson = objectMapper.writeValueAsString(fullClaims);
-            
-            String headerBase64 = base64UrlEncode(headerJson.getBytes(StandardCharsets.UTF_8));
-            String payloadBase64 = base64UrlEncode(payloadJson.getBytes(StandardCharsets.UTF_8));
-            
-            // 签名
-            String dataToSign = headerBase64 + "." + payloadBase64;
-            byte[] signature = hmacSha256(dataToSign.getBytes(StandardCharsets.UTF_8));
-            String signatureBase64 = base64UrlEncode(signature);
-            
-            return dataToSign + "." + signatureBase64;
-        } catch (Exception e) {
-            log.error("创建 JWT Token 失败: {}", e.getMessage());
-            throw new RuntimeException("创建 JWT Token 失败", e);
-        }
+        return createToken((Object) claims);
     }
 
     /**
      * 验证 JWT Token
-     * 
+     *
      * @param token JWT Token 字符串
      * @return 解析后的 Claims
      */
     public Map<String, Object> verifyToken(String token) {
+        long start = System.nanoTime();
+        JfrEvents.JwtVerifyEvent event = new JfrEvents.JwtVerifyEvent();
+        event.begin();
+        event.tokenLength = token != null ? token.length() : 0;
         try {
-            String[] parts = token.split("\\.");
-            if (parts.length != 3) {
+            int headerEnd = token.indexOf('.');
+            int payloadEnd = headerEnd < 0 ? -1 : token.indexOf('.', headerEnd + 1);
+            if (payloadEnd < 0 || token.indexOf('.', payloadEnd + 1) >= 0
+                    || token.length() - payloadEnd - 1 != encodedLength(SIGNATURE_LENGTH)) {
                 throw new RuntimeException("Invalid JWT format");
             }
-            
+
+            // 合法的 Token 只包含 ASCII 字符
+            byte[] bytes = token.getBytes(StandardCharsets.US_ASCII);
+
             // 验证签名
-            String dataToSign = parts[0] + "." + parts[1];
-            byte[] expectedSignature = hmacSha256(dataToSign.getBytes(StandardCharsets.UTF_8));
-            String expectedSignatureBase64 = base64UrlEncode(expectedSignature);
-            
-            if (!expectedSignatureBase64.equals(parts[2])) {
+            byte[] signature = decode(bytes, payloadEnd + 1, bytes.length - payloadEnd - 1);
+            Mac mac = macs.get();
+            mac.update(bytes, 0, payloadEnd);
+            byte[] expectedSignature = mac.doFinal();
+            if (!MessageDigest.isEqual(expectedSignature, signature)) {
                 throw new RuntimeException("JWT signature verification failed");
             }
-            
+
             // 解析 payload
-            String payloadJson = new String(base64UrlDecode(parts[1]), StandardCharsets.UTF_8);
+            byte[] payloadJson = decode(bytes, headerEnd + 1, payloadEnd - headerEnd - 1);
             @SuppressWarnings("unchecked")
             Map<String, Object> claims = objectMapper.readValue(payloadJson, Map.class);
-            
+
             // 检查过期时间
             if (claims.containsKey("exp")) {
                 long exp = ((Number) claims.get("exp")).longValue();
@@ -142,17 +154,22 @@ public class JwtService {
                     throw new RuntimeException("JWT token expired");
                 }
             }
-            
+
+            metrics.jwtVerify(true, start);
+            event.success = true;
             return claims;
         } catch (Exception e) {
+            metrics.jwtVerify(false, start);
             log.warn("JWT Token 验证失败: {}", e.getMessage());
             throw new RuntimeException("JWT Token 验证失败", e);
+        } finally {
+            event.commit();
         }
     }
 
     /**
      * 验证 Token 是否有效
-     * 
+     *
      * @param token JWT Token 字符串
      * @return true 如果有效
      */
@@ -167,7 +184,7 @@ public class JwtService {
 
     /**
      * 从 Token 中提取指定字段
-     * 
+     *
      * @param token JWT Token 字符串
      * @param key 字段名
      * @return 字段值
@@ -176,28 +193,98 @@ public class JwtService {
         Map<String, Object> claims = verifyToken(token);
         return claims.get(key);
     }
-    
+
+    /**
+     * 序列化 claims 并添加 iat 和 exp
+     */
+    private byte[] serializeClaims(Object payload) throws Exception {
+        long now = System.currentTimeMillis() / 1000;
+        long exp = now + properties.getJwt().getExpiresIn();
+
+        // 常见情况：Map 中没有 iat/exp，直接在序列化结果末尾追加
+        if (payload instanceof Map && !((Map<?, ?>) payload).containsKey("iat")
+                && !((Map<?, ?>) payload).containsKey("exp")) {
+            byte[] json = objectMapper.writeValueAsBytes(payload);
+            int end = json.length - 1;
+            while (end > 0 && json[end] != '}') {
+                end--;
+            }
+            byte[] suffix = ((((Map<?, ?>) payload).isEmpty() ? "" : ",")
+                    + "\"iat\":" + now + ",\"exp\":" + exp + "}").getBytes(StandardCharsets.US_ASCII);
+            byte[] claims = new byte[end + suffix.length];
+            System.arraycopy(json, 0, claims, 0, end);
+            System.arraycopy(suffix, 0, claims, end, suffix.length);
+            return claims;
+        }
+
+        JsonNode node = objectMapper.valueToTree(payload);
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("JWT payload 必须是 JSON 对象");
+        }
+        ((ObjectNode) node).put("iat", now);
+        ((ObjectNode) node).put("exp", exp);
+        return objectMapper.writeValueAsBytes(node);
+    }
+
     /**
-     * HMAC-SHA256 签名
+     * 拼接 header.payload 并签名
      */
-    private byte[] hmacSha256(byte[] data) throws Exception {
-        Mac mac = Mac.getInstance("HmacSHA256");
-        SecretKeySpec keySpec = new SecretKeySpec(secretKeyBytes, "HmacSHA256");
-        mac.init(keySpec);
-        return mac.doFinal(data);
+    private String sign(byte[] claims) {
+        byte[] payloadSegment = BASE64_ENCODER.encode(claims);
+        int signingLength = HEADER_SEGMENT.length + 1 + payloadSegment.length;
+
+        byte[] token = new byte[signingLength + 1 + encodedLength(SIGNATURE_LENGTH)];
+        System.arraycopy(HEADER_SEGMENT, 0, token, 0, HEADER_SEGMENT.length);
+        token[HEADER_SEGMENT.length] = '.';
+        System.arraycopy(payloadSegment, 0, token, HEADER_SEGMENT.length + 1, payloadSegment.length);
+
+        Mac mac = macs.get();
+        mac.update(token, 0, signingLength);
+        byte[] signatureSegment = BASE64_ENCODER.encode(mac.doFinal());
+        token[signingLength] = '.';
+        System.arraycopy(signatureSegment, 0, token, signingLength + 1, signatureSegment.length);
+
+        return new String(token, StandardCharsets.US_ASCII);
     }
-    
+
     /**
-     * Base64Url 编码（无填充）
+     * Base64Url 解码（支持无填充）
      */
-    private String base64UrlEncode(byte[] data) {
-        return Base64.getUrlEncoder().withoutPadding().encodeToString(data);
+    private static byte[] decode(byte[] src, int offset, int length) {
+        ByteBuffer decoded = BASE64_DECODER.decode(ByteBuffer.wrap(src, offset, length));
+        if (decoded.hasArray() && decoded.arrayOffset() == 0 && decoded.remaining() == decoded.array().length) {
+            return decoded.array();
+        }
+        byte[] result = new byte[decoded.remaining()];
+        decoded.get(result);
+        return result;
+    }
+
+    /**
+     * 无填充 Base64 编码长度
+     */
+    private static int encodedLength(int length) {
+        return (length * 4 + 2) / 3;
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(keySpec);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("初始化 HMAC 失败", e);
+        }
     }
-    
+
     /**
-     * Base64Url 解码
+     * 复制已初始化的 Mac，提供者不支持复制时重新创建
      */
-    private byte[] base64UrlDecode(String data) {
-        return Base64.getUrlDecoder().decode(data);
+    private Mac cloneMac(Mac prototype) {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            return newMac();
+        }
     }
 }
@@ -0,0 +1,275 @@
+package com.example.onlyoffice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务指标（Micrometer）
+ *
+ * 配置生成、JWT、回调、回调文档下载保存、存储写入和刷盘、文档列表、上传和文档服务器探测的计时器、计数器和分布统计，
+ * 计时器和分布统计都发布百分位直方图（Prometheus 中用 histogram_quantile 计算任意百分位）
+ *
+ * 各组件的状态（队列长度、缓存大小等）以 Gauge 形式注册，见 {@link com.example.onlyoffice.config.MetricsConfig}
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Component
+public class ServiceMetrics {
+
+    private final MeterRegistry registry;
+
+    private final Timer configRequests;
+    private final Timer configBuilds;
+    private final Timer jwtCreate;
+    private final Timer jwtCreateFailed;
+    private final Timer jwtVerify;
+    private final Timer jwtVerifyFailed;
+    private final Timer saveDownloads;
+    private final DistributionSummary saveDownloadBytes;
+    private final DistributionSummary saveDownloadThroughput;
+    private final Counter saveFailures;
+    private final Timer storageWrites;
+    private final Timer storageCommits;
+    private final Timer fileFsyncs;
+    private final Timer directoryFsyncs;
+    private final DistributionSummary fsyncBatches;
+    private final Timer listDocuments;
+    private final DistributionSummary multipartUploads;
+    private final DistributionSummary streamUploads;
+    private final DistributionSummary chunkedUploads;
+    private final Timer probes;
+    private final Timer probesFailed;
+
+    public ServiceMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.configRequests = timer("onlyoffice.config.requests", "获取编辑器配置（含缓存命中）");
+        this.configBuilds = timer("onlyoffice.config.builds", "构建并签名编辑器配置（缓存未命中）");
+        this.jwtCreate = jwtTimer("create", "success");
+        this.jwtCreateFailed = jwtTimer("create", "failure");
+        this.jwtVerify = jwtTimer("verify", "success");
+        this.jwtVerifyFailed = jwtTimer("verify", "failure");
+        this.saveDownloads = timer("onlyoffice.save.download", "回调文档下载耗时");
+        this.saveDownloadBytes = DistributionSummary.builder("onlyoffice.save.download.size")
+                .description("回调文档下载大小")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.saveDownloadThroughput = DistributionSummary.builder("onlyoffice.save.download.throughput")
+                .description("回调文档下载吞吐量")
+                .baseUnit("bytes_per_second")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.saveFailures = Counter.builder("onlyoffice.save.failures")
+                .description("回调文档保存失败次数")
+                .register(registry);
+        this.storageWrites = timer("onlyoffice.storage.write", "写入临时文件耗时");
+        this.storageCommits = timer("onlyoffice.storage.commit", "原子替换目标文件耗时（含去重和索引更新）");
+        this.fileFsyncs = fsyncTimer("file");
+        this.directoryFsyncs = fsyncTimer("directory");
+        this.fsyncBatches = DistributionSummary.builder("onlyoffice.storage.fsync.batch")
+                .description("合并刷盘每批的保存数")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.listDocuments = timer("onlyoffice.documents.list", "获取文档列表耗时（含输出响应）");
+        this.multipartUploads = uploadSummary("multipart");
+        this.streamUploads = uploadSummary("stream");
+        this.chunkedUploads = uploadSummary("chunked");
+        this.probes = probeTimer("success");
+        this.probesFailed = probeTimer("failure");
+    }
+
+    /**
+     * 获取编辑器配置
+     *
+     * @param startNanos 开始时间（System.nanoTime）
+     */
+    public void configRequest(long startNanos) {
+        record(configRequests, startNanos);
+    }
+
+    /**
+     * 构建并签名编辑器配置
+     */
+    public void configBuild(long startNanos) {
+        record(configBuilds, startNanos);
+    }
+
+    /**
+     * JWT 签名
+     */
+    public void jwtCreate(boolean success, long startNanos) {
+        record(success ? jwtCreate : jwtCreateFailed, startNanos);
+    }
+
+    /**
+     * JWT 验证
+     */
+    public void jwtVerify(boolean success, long startNanos) {
+        record(success ? jwtVerify : jwtVerifyFailed, startNanos);
+    }
+
+    /**
+     * 收到回调
+     *
+     * @param status 回调状态码
+     */
+    public void callback(Integer status) {
+        registry.counter("onlyoffice.callbacks", "status", status != null ? status.toString() : "none").increment();
+    }
+
+    /**
+     * 回调文档下载完成
+     *
+     * @param bytes 下载的字节数
+     */
+    public void saveDownloaded(long bytes, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        saveDownloads.record(elapsed, TimeUnit.NANOSECONDS);
+        saveDownloadBytes.record(bytes);
+        if (elapsed > 0) {
+            saveDownloadThroughput.record(bytes * 1e9 / elapsed);
+        }
+    }
+
+    /**
+     * 回调文档保存失败
+     */
+    public void saveFailed() {
+        saveFailures.increment();
+    }
+
+    /**
+     * 写入临时文件
+     */
+    public void storageWrite(long startNanos) {
+        record(storageWrites, startNanos);
+    }
+
+    /**
+     * 原子替换目标文件
+     */
+    public void storageCommit(long startNanos) {
+        record(storageCommits, startNanos);
+    }
+
+    /**
+     * 刷盘
+     *
+     * @param directory true 为目录（替换后），false 为临时文件内容（替换前）
+     */
+    public void storageFsync(boolean directory, long startNanos) {
+        record(directory ? directoryFsyncs : fileFsyncs, startNanos);
+    }
+
+    /**
+     * 合并刷盘的一个批次
+     *
+     * @param saves 本批次的保存数
+     */
+    public void fsyncBatch(int saves) {
+        fsyncBatches.record(saves);
+    }
+
+    /**
+     * 获取文档列表
+     */
+    public void listDocuments(long startNanos) {
+        record(listDocuments, startNanos);
+    }
+
+    /**
+     * 文档服务器健康探测
+     */
+    public void documentServerProbe(boolean success, long startNanos) {
+        record(success ? probes : probesFailed, startNanos);
+    }
+
+    /**
+     * 并发数达到上限被拒绝的请求
+     *
+     * @param bulkhead 接口类别: config, upload, callback
+     */
+    public void bulkheadRejected(String bulkhead) {
+        registry.counter("onlyoffice.bulkhead.rejected", "bulkhead", bulkhead).increment();
+    }
+
+    /**
+     * 超过用户速率限制被拒绝的请求
+     */
+    public void rateLimited(String bulkhead) {
+        registry.counter("onlyoffice.ratelimit.rejected", "bulkhead", bulkhead).increment();
+    }
+
+    /**
+     * 上传文档
+     *
+     * @param mode 上传方式: multipart, stream, chunked
+     * @param bytes 文件大小
+     */
+    public void upload(String mode, long bytes) {
+        switch (mode) {
+            case "multipart":
+                multipartUploads.record(bytes);
+                break;
+            case "stream":
+                streamUploads.record(bytes);
+                break;
+            case "chunked":
+                chunkedUploads.record(bytes);
+                break;
+            default:
+                throw new IllegalArgumentException("未知的上传方式: " + mode);
+        }
+    }
+
+    private Timer timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Timer jwtTimer(String operation, String outcome) {
+        return Timer.builder("onlyoffice.jwt")
+                .description("JWT 签名和验证耗时")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Timer fsyncTimer(String target) {
+        return Timer.builder("onlyoffice.storage.fsync")
+                .description("保存文档时的刷盘耗时")
+                .tag("target", target)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private DistributionSummary uploadSummary(String mode) {
+        return DistributionSummary.builder("onlyoffice.upload.size")
+                .description("上传文档大小")
+                .baseUnit("bytes")
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Timer probeTimer(String outcome) {
+        return Timer.builder("onlyoffice.document.server.probe")
+                .description("文档服务器健康探测耗时")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static void record(Timer timer, long startNanos) {
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+/**
+ * 存储目录布局
+ *
+ * flat: 所有文档直接放在存储目录下
+ * sharded: 按文档 ID 的哈希放在两级子目录下，如 uploads/3f/a2/report.docx，
+ * 避免单个目录中文件过多导致查找、创建和列目录变慢
+ *
+ * sharded 布局下仍会在存储目录根下查找文件（迁移前的旧文件）
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+public class StorageLayout {
+
+    private final Path root;
+    private final boolean sharded;
+
+    public StorageLayout(Path root, OnlyOfficeProperties.Layout layout) {
+        this.root = root;
+        this.sharded = layout == OnlyOfficeProperties.Layout.SHARDED;
+    }
+
+    /**
+     * 存储目录
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * 是否分目录存储
+     */
+    public boolean isSharded() {
+        return sharded;
+    }
+
+    /**
+     * 文件所在目录
+     *
+     * @param filename 文件名（已清理的文档 ID + "." + 类型）
+     * @return flat 布局为存储目录，sharded 布局为哈希子目录
+     */
+    public Path directoryOf(String filename) {
+        if (!sharded) {
+            return root;
+        }
+        int hash = shardHash(filename);
+        return root.resolve(toHex((hash >>> 8) & 0xff)).resolve(toHex(hash & 0xff));
+    }
+
+    /**
+     * 文件路径
+     *
+     * @param filename 文件名
+     * @return 当前布局下的路径
+     */
+    public Path pathOf(String filename) {
+        return directoryOf(filename).resolve(filename);
+    }
+
+    /**
+     * 迁移前的路径（存储目录根下）
+     *
+     * @param filename 文件名
+     * @return sharded 布局下的旧路径，flat 布局下返回 null
+     */
+    public Path legacyPathOf(String filename) {
+        return sharded ? root.resolve(filename) : null;
+    }
+
+    /**
+     * 是否是分片目录名（两位十六进制）
+     */
+    public static boolean isShardName(String name) {
+        return name.length() == 2 && Character.digit(name.charAt(0), 16) >= 0 && Character.digit(name.charAt(1), 16) >= 0
+                && name.equals(name.toLowerCase());
+    }
+
+    /**
+     * 按文档 ID（不含扩展名）计算哈希，同一文档的不同类型放在同一目录
+     */
+    private static int shardHash(String filename) {
+        int dotIndex = filename.lastIndexOf('.');
+        String id = dotIndex > 0 ? filename.substring(0, dotIndex) : filename;
+        CRC32 crc = new CRC32();
+        crc.update(id.getBytes(StandardCharsets.UTF_8));
+        return (int) crc.getValue();
+    }
+
+    private static String toHex(int value) {
+        return value < 0x10 ? "0" + Integer.toHexString(value) : Integer.toHexString(value);
+    }
+}
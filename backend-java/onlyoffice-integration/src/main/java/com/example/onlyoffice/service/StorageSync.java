@@ -0,0 +1,240 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 保存文档时的刷盘
+ *
+ * 写入临时文件后原子替换的保存要在断电后仍然有效，需要两次刷盘：替换前刷新临时文件的内容
+ * （否则替换后的文件可能是空的或不完整的），替换后刷新所在目录（否则替换本身可能丢失）。
+ * 两次刷盘都完成后才返回，回调和上传随后应答
+ *
+ * directory-group 模式下只有目录刷盘由后台线程合并：第一个请求到达后再等待一个窗口，窗口内到达的保存
+ * （以及刷盘期间到达的）组成一批，每个目录只刷一次后一起返回。自动保存集中到达时大量保存共享同一次目录刷盘。
+ * 临时文件内容不合并：刷盘是按文件的，每个保存仍要刷新自己的临时文件，由各保存线程在替换前并行执行
+ * （同时进行的刷盘由文件系统日志合并提交），fileSyncs 始终等于保存次数
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+@Slf4j
+public class StorageSync {
+
+    /**
+     * 刷盘线程检查是否停止的间隔（毫秒）
+     */
+    private static final long POLL_INTERVAL = 100;
+
+    private final OnlyOfficeProperties.StorageFsync mode;
+    private final long windowNanos;
+    private final ServiceMetrics metrics;
+
+    /**
+     * 目录不能打开为通道的平台（Windows）不刷新目录
+     */
+    private final boolean directorySync;
+
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private volatile boolean running;
+    private Thread flusher;
+
+    private final AtomicLong fileSyncs = new AtomicLong();
+    private final AtomicLong directorySyncs = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedSaves = new AtomicLong();
+
+    public StorageSync(OnlyOfficeProperties.Storage config, ServiceMetrics metrics) {
+        this.mode = config.getFsync();
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, config.getFsyncGroupWindow()));
+        this.metrics = metrics;
+        this.directorySync = !System.getProperty("os.name", "").startsWith("Windows");
+    }
+
+    /**
+     * 启动目录合并刷盘线程（仅 directory-group 模式）
+     */
+    public void start() {
+        if (mode != OnlyOfficeProperties.StorageFsync.DIRECTORY_GROUP) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::flushLoop, "storage-fsync");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("存储目录合并刷盘启动, 窗口 {} 微秒", TimeUnit.NANOSECONDS.toMicros(windowNanos));
+    }
+
+    /**
+     * 停止合并刷盘线程，剩余的请求直接刷盘
+     */
+    public void stop() {
+        running = false;
+        if (flusher != null) {
+            try {
+                flusher.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<Request> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+    }
+
+    /**
+     * 替换前刷新临时文件内容
+     *
+     * @param file 临时文件
+     */
+    public void syncFile(Path file) throws IOException {
+        if (mode == OnlyOfficeProperties.StorageFsync.NONE) {
+            return;
+        }
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        }
+        fileSyncs.incrementAndGet();
+        metrics.storageFsync(false, start);
+    }
+
+    /**
+     * 替换后刷新所在目录（directory-group 模式下等待所在批次完成）
+     *
+     * @param directory 目标文件所在目录
+     */
+    public void syncDirectory(Path directory) throws IOException {
+        if (mode == OnlyOfficeProperties.StorageFsync.NONE || !directorySync) {
+            return;
+        }
+        if (mode == OnlyOfficeProperties.StorageFsync.ALWAYS || !running) {
+            forceDirectory(directory);
+            return;
+        }
+
+        Request request = new Request(directory);
+        queue.add(request);
+        if (!running && queue.remove(request)) {
+            // 已停止，不会再有批次
+            forceDirectory(directory);
+            return;
+        }
+        try {
+            request.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待刷盘被中断: " + directory);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("刷盘失败: " + directory, e.getCause());
+        }
+    }
+
+    /**
+     * 获取刷盘状态
+     *
+     * @return 统计: mode, fileSyncs, directorySyncs, batches（目录合并批次）, batchedSaves（合并的保存数）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("mode", mode.name().toLowerCase());
+        stats.put("fileSyncs", fileSyncs.get());
+        stats.put("directorySyncs", directorySyncs.get());
+        stats.put("batches", batches.get());
+        stats.put("batchedSaves", batchedSaves.get());
+        return stats;
+    }
+
+    private void flushLoop() {
+        while (running) {
+            List<Request> batch = new ArrayList<>();
+            try {
+                Request first = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 已取出的请求仍然刷盘
+                running = false;
+            }
+            queue.drainTo(batch);
+            if (!batch.isEmpty()) {
+                flush(batch);
+            }
+        }
+    }
+
+    /**
+     * 刷新一批请求涉及的目录，每个目录一次
+     */
+    private void flush(List<Request> batch) {
+        Map<Path, List<Request>> byDirectory = new LinkedHashMap<>();
+        for (Request request : batch) {
+            byDirectory.computeIfAbsent(request.directory, d -> new ArrayList<>()).add(request);
+        }
+        for (Map.Entry<Path, List<Request>> entry : byDirectory.entrySet()) {
+            try {
+                forceDirectory(entry.getKey());
+                entry.getValue().forEach(request -> request.done.complete(null));
+            } catch (IOException | RuntimeException e) {
+                log.error("目录刷盘失败: {}, {}", entry.getKey(), e.getMessage());
+                entry.getValue().forEach(request -> request.done.completeExceptionally(e));
+            }
+        }
+        batches.incrementAndGet();
+        batchedSaves.addAndGet(batch.size());
+        metrics.fsyncBatch(batch.size());
+    }
+
+    private void forceDirectory(Path directory) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+        directorySyncs.incrementAndGet();
+        metrics.storageFsync(true, start);
+    }
+
+    /**
+     * 等待目录刷盘的保存
+     */
+    private static class Request {
+        private final Path directory;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Request(Path directory) {
+            this.directory = directory;
+        }
+    }
+}
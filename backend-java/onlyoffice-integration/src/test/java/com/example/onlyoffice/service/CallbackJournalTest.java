@@ -0,0 +1,143 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.dto.CallbackDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 回调日志测试：always 策略下并发写入合并刷盘、重启后重放、压缩期间的刷盘
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+class CallbackJournalTest {
+
+    private static final int THREADS = 16;
+    private static final int APPENDS_PER_THREAD = 50;
+
+    @TempDir
+    Path journalDir;
+
+    private OnlyOfficeProperties properties;
+    private CallbackJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        properties = new OnlyOfficeProperties();
+        properties.getCallback().setJournalDir(journalDir.toString());
+        properties.getCallback().setJournalFsync(OnlyOfficeProperties.JournalFsync.ALWAYS);
+        journal = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    void concurrentAppendsAreAllDurableWithAtMostOneSyncEach() throws Exception {
+        List<Long> seqs = appendConcurrently(THREADS, APPENDS_PER_THREAD);
+
+        int total = THREADS * APPENDS_PER_THREAD;
+        assertEquals(total, new HashSet<>(seqs).size(), "序号不重复");
+        assertTrue(journal.syncCount() <= total, "刷盘次数: " + journal.syncCount());
+
+        journal.close();
+        journal = open();
+        assertEquals(total, journal.pendingEntries().size());
+    }
+
+    @Test
+    void appendsStayDurableWhileTheJournalIsCompacted() throws Exception {
+        // 大回调让日志很快超过压缩阈值，写入和完成交替进行，压缩与刷盘并发
+        String url = "http://documentserver/cache/files/" + "x".repeat(4096);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        Set<Long> kept = new HashSet<>();
+        try {
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    List<Long> open = new ArrayList<>();
+                    for (int i = 0; i < 100; i++) {
+                        long seq = journal.append("doc", callback(url)).getSeq();
+                        if (i % 10 == 0) {
+                            open.add(seq);
+                        } else {
+                            journal.complete(seq);
+                        }
+                    }
+                    return open;
+                }));
+            }
+            for (Future<List<Long>> future : futures) {
+                kept.addAll(future.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        journal.close();
+        journal = open();
+        Set<Long> replayed = new HashSet<>();
+        journal.pendingEntries().forEach(entry -> replayed.add(entry.getSeq()));
+        assertEquals(kept, replayed);
+    }
+
+    private List<Long> appendConcurrently(int threads, int appendsPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<Long> seqs = new ArrayList<>();
+                    for (int i = 0; i < appendsPerThread; i++) {
+                        seqs.add(journal.append("doc", callback("http://documentserver/" + i)).getSeq());
+                    }
+                    return seqs;
+                }));
+            }
+            start.countDown();
+            List<Long> seqs = new ArrayList<>();
+            for (Future<List<Long>> future : futures) {
+                seqs.addAll(future.get(60, TimeUnit.SECONDS));
+            }
+            return seqs;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private CallbackJournal open() {
+        CallbackJournal opened = new CallbackJournal(properties, new ObjectMapper());
+        opened.init();
+        return opened;
+    }
+
+    private static CallbackDTO callback(String url) {
+        CallbackDTO callback = new CallbackDTO();
+        callback.setStatus(2);
+        callback.setKey("key");
+        callback.setUrl(url);
+        return callback;
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.dto.CallbackDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 回调保存队列测试：按文档合并、执行中加最多一个排队、最终保存不合并、重试顺序、死信
+ *
+ * 保存处理器是假的：记录执行顺序，可以让指定的保存阻塞或失败
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+class CallbackSaveQueueTest {
+
+    private static final String DOC = "doc";
+
+    @TempDir
+    Path journalDir;
+
+    private OnlyOfficeProperties properties;
+    private CallbackJournal journal;
+    private CallbackSaveQueue queue;
+
+    /**
+     * 执行顺序（回调的 url，重试时重复出现）
+     */
+    private final List<String> executed = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<String> started = new LinkedBlockingQueue<>();
+    private final Map<String, CountDownLatch> gates = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        properties = new OnlyOfficeProperties();
+        OnlyOfficeProperties.Callback config = properties.getCallback();
+        config.setJournalDir(journalDir.toString());
+        config.setWorkers(2);
+        config.setRetryDelay(50);
+        config.setMaxAttempts(3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        gates.values().forEach(CountDownLatch::countDown);
+        if (queue != null) {
+            queue.shutdown();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Test
+    void queuedForcesaveIsSupersededByALaterOne() throws Exception {
+        start();
+        gate("a");
+        queue.submit(DOC, forcesave("a"));
+        awaitStarted("a");
+
+        queue.submit(DOC, forcesave("b"));
+        queue.submit(DOC, forcesave("c"));
+        assertEquals(1, queue.getStats().get("queued"));
+        assertEquals(1, queue.getStats().get("coalesced"));
+
+        release("a");
+        awaitIdle();
+        assertEquals(List.of("a", "c"), executed);
+    }
+
+    @Test
+    void keepsOneInFlightAndAtMostOneForcesaveQueued() throws Exception {
+        start();
+        gate("a");
+        queue.submit(DOC, forcesave("a"));
+        awaitStarted("a");
+
+        for (int i = 1; i <= 10; i++) {
+            queue.submit(DOC, forcesave("f" + i));
+            assertEquals(1, queue.getStats().get("queued"));
+        }
+        assertEquals(9, queue.getStats().get("coalesced"));
+        // 执行中的保存不会与同一文档的其他保存并行
+        assertEquals(List.of("a"), executed);
+
+        release("a");
+        awaitIdle();
+        assertEquals(List.of("a", "f10"), executed);
+    }
+
+    @Test
+    void finalSavesAreNeverCoalesced() throws Exception {
+        start();
+        gate("a");
+        queue.submit(DOC, forcesave("a"));
+        awaitStarted("a");
+
+        queue.submit(DOC, finalSave("final1"));
+        queue.submit(DOC, forcesave("s1"));
+        // 排在最后的强制保存被取代，排在前面的最终保存保留
+        queue.submit(DOC, finalSave("final2"));
+        queue.submit(DOC, forcesave("s2"));
+        assertEquals(3, queue.getStats().get("queued"));
+        assertEquals(1, queue.getStats().get("coalesced"));
+
+        release("a");
+        awaitIdle();
+        assertEquals(List.of("a", "final1", "final2", "s2"), executed);
+    }
+
+    @Test
+    void failedFinalSaveRetriesBeforeLaterSaves() throws Exception {
+        start();
+        gate("final1");
+        failures.put("final1", new AtomicInteger(1));
+        queue.submit(DOC, finalSave("final1"));
+        awaitStarted("final1");
+
+        queue.submit(DOC, finalSave("final2"));
+        release("final1");
+        awaitIdle();
+        assertEquals(List.of("final1", "final1", "final2"), executed);
+    }
+
+    @Test
+    void failedForcesaveIsDroppedWhenANewerSaveArrivedDuringBackoff() throws Exception {
+        start();
+        gate("s1");
+        failures.put("s1", new AtomicInteger(1));
+        queue.submit(DOC, forcesave("s1"));
+        awaitStarted("s1");
+
+        queue.submit(DOC, forcesave("s2"));
+        release("s1");
+        awaitIdle();
+        assertEquals(List.of("s1", "s2"), executed);
+        assertEquals(1, queue.getStats().get("coalesced"));
+    }
+
+    @Test
+    void exhaustedSaveBecomesADeadLetter() throws Exception {
+        start();
+        failures.put("final1", new AtomicInteger(Integer.MAX_VALUE));
+        queue.submit(DOC, finalSave("final1"));
+
+        awaitIdle();
+        assertEquals(List.of("final1", "final1", "final1"), executed);
+        assertEquals(1, queue.getStats().get("deadLetters"));
+        List<CallbackJournal.Entry> deadLetters = journal.deadLetters();
+        assertEquals("final1", deadLetters.get(0).getCallback().getUrl());
+
+        // 死信不会在重启后重放
+        queue.shutdown();
+        journal.close();
+        executed.clear();
+        start();
+        assertTrue(journal.pendingEntries().isEmpty());
+        assertEquals(1, journal.deadLetterCount());
+    }
+
+    @Test
+    void queuesOverCapacityInsteadOfSavingOnTheCallerThread() throws Exception {
+        properties.getCallback().setQueueCapacity(1);
+        start();
+        gate("a");
+        queue.submit(DOC, forcesave("a"));
+        awaitStarted("a");
+
+        queue.submit(DOC, finalSave("final1"));
+        queue.submit(DOC, finalSave("final2"));
+        assertEquals(2, queue.getStats().get("queued"));
+        assertEquals(1, queue.getStats().get("overCapacity"));
+        assertEquals(List.of("a"), executed);
+
+        release("a");
+        awaitIdle();
+        assertEquals(List.of("a", "final1", "final2"), executed);
+    }
+
+    private void start() {
+        journal = new CallbackJournal(properties, new ObjectMapper());
+        journal.init();
+        queue = new CallbackSaveQueue(properties, journal);
+        queue.start(this::save);
+    }
+
+    /**
+     * 假的保存处理器
+     */
+    private void save(CallbackDTO callback) {
+        String url = callback.getUrl();
+        executed.add(url);
+        started.add(url);
+        CountDownLatch gate = gates.get(url);
+        if (gate != null) {
+            try {
+                gate.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        AtomicInteger remaining = failures.get(url);
+        if (remaining != null && remaining.getAndDecrement() > 0) {
+            throw new IllegalStateException("保存失败: " + url);
+        }
+    }
+
+    private void gate(String url) {
+        gates.put(url, new CountDownLatch(1));
+    }
+
+    private void release(String url) {
+        gates.get(url).countDown();
+    }
+
+    private void awaitStarted(String url) throws InterruptedException {
+        assertEquals(url, started.poll(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 等待所有保存执行完毕（日志中没有未完成的记录）
+     */
+    private void awaitIdle() throws InterruptedException {
+        awaitUntil(() -> journal.pendingEntries().isEmpty()
+                && queue.getStats().get("queued") == 0
+                && queue.getStats().get("active") == 0);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    private static CallbackDTO forcesave(String url) {
+        return callback(6, url);
+    }
+
+    private static CallbackDTO finalSave(String url) {
+        return callback(2, url);
+    }
+
+    private static CallbackDTO callback(int status, String url) {
+        CallbackDTO callback = new CallbackDTO();
+        callback.setStatus(status);
+        callback.setKey("key");
+        callback.setUrl(url);
+        return callback;
+    }
+}
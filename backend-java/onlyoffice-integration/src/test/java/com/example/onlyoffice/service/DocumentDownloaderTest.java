@@ -0,0 +1,212 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.HttpClientConfig;
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 文档下载器测试（本地 HTTP 服务器）：单个请求下载、断点续传、分段并行下载、不支持 Range 的服务器
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+class DocumentDownloaderTest {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+    private static final String ETAG = "\"v1\"";
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private DocumentDownloader downloader;
+    private OnlyOfficeProperties properties;
+
+    /**
+     * 服务器收到的 Range 请求头（不带 Range 时为 null 的占位 "-"）
+     */
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+
+    private byte[] content;
+    private volatile boolean supportsRange = true;
+
+    /**
+     * 为 true 时下一个请求只发送一半内容后断开连接
+     */
+    private final AtomicBoolean cutNextTransfer = new AtomicBoolean();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/doc", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        properties = new OnlyOfficeProperties();
+        // 服务器未写完声明的长度就结束响应时，客户端可能要等到读取超时才发现连接已断
+        properties.getDocumentServer().setReadTimeout(2000);
+        OnlyOfficeProperties.Download download = properties.getDocumentServer().getDownload();
+        download.setRetryBackoff(10);
+        download.setMinReadTimeout(500);
+        download.setParallelThreshold(Long.MAX_VALUE);
+        HttpClientConfig httpClientConfig = new HttpClientConfig(properties);
+        connectionManager = httpClientConfig.documentServerConnectionManager();
+        httpClient = httpClientConfig.documentServerHttpClient(connectionManager,
+                httpClientConfig.documentServerRequestConfig());
+        downloader = new DocumentDownloader(properties, httpClient, httpClientConfig.documentServerRequestConfig());
+        downloader.init();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        downloader.shutdown();
+        httpClient.close();
+        connectionManager.close();
+        server.stop(0);
+    }
+
+    @Test
+    void downloadsWithASingleRequest() throws IOException {
+        content = randomBytes(100_000);
+
+        Path target = download();
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(List.of("bytes=0-"), ranges);
+    }
+
+    @Test
+    void resumesFromTheWrittenPositionAfterConnectionIsCut() throws IOException {
+        content = randomBytes(200_000);
+        cutNextTransfer.set(true);
+
+        Path target = download();
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(2, ranges.size(), "中断的请求、续传: " + ranges);
+        assertEquals("bytes=0-", ranges.get(0));
+        Matcher resumed = RANGE.matcher(ranges.get(1));
+        assertTrue(resumed.matches());
+        long resumeStart = Long.parseLong(resumed.group(1));
+        assertTrue(resumeStart > 0 && resumeStart <= 100_000, "续传位置: " + resumeStart);
+        assertEquals(199_999, Long.parseLong(resumed.group(2)));
+    }
+
+    @Test
+    void parallelSegmentsReassembleTheExactBytes() throws IOException {
+        content = randomBytes(1_000_003);
+        OnlyOfficeProperties.Download download = properties.getDocumentServer().getDownload();
+        download.setParallelThreshold(1024);
+        download.setSegments(4);
+
+        Path target = download();
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        // 第一个请求只接收第一个区段，其余 3 个区段并行请求，覆盖剩余部分且互不重叠
+        assertEquals(4, ranges.size(), ranges.toString());
+        assertEquals("bytes=0-", ranges.get(0));
+        long segmentSize = (content.length + 3) / 4;
+        long covered = segmentSize;
+        for (String range : ranges.subList(1, ranges.size())) {
+            Matcher matcher = RANGE.matcher(range);
+            assertTrue(matcher.matches(), range);
+            assertEquals(0, Long.parseLong(matcher.group(1)) % segmentSize, range);
+            covered += Long.parseLong(matcher.group(2)) - Long.parseLong(matcher.group(1)) + 1;
+        }
+        assertEquals(content.length, covered);
+    }
+
+    @Test
+    void savesTheWholeResponseWhenServerIgnoresRange() throws IOException {
+        content = randomBytes(50_000);
+        supportsRange = false;
+
+        Path target = download();
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(List.of("bytes=0-"), ranges, "第一个请求直接完成下载");
+    }
+
+    private Path download() throws IOException {
+        Path target = tempDir.resolve("download.docx");
+        String url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/doc";
+        MessageDigest digest = FileStorageService.sha256();
+        long size = downloader.download(url, target, Long.MAX_VALUE, digest);
+        assertEquals(content.length, size);
+        // 下载时计算的哈希与内容一致（含续传和并行下载）
+        assertArrayEquals(FileStorageService.sha256().digest(content), digest.digest());
+        return target;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        ranges.add(range != null ? range : "-");
+        exchange.getResponseHeaders().set("ETag", ETAG);
+
+        Matcher matcher = range != null ? RANGE.matcher(range) : null;
+        if (!supportsRange || matcher == null || !matcher.matches()) {
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content);
+            }
+            return;
+        }
+
+        int start = Integer.parseInt(matcher.group(1));
+        int end = matcher.group(2).isEmpty()
+                ? content.length - 1 : Math.min(Integer.parseInt(matcher.group(2)), content.length - 1);
+        int length = end - start + 1;
+        exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+        exchange.sendResponseHeaders(206, length);
+
+        OutputStream out = exchange.getResponseBody();
+        if (length > 1 && cutNextTransfer.compareAndSet(true, false)) {
+            // 只发送一半后断开连接（声明的长度未写完，关闭时连接随之断开）
+            out.write(content, start, length / 2);
+            out.flush();
+            try {
+                out.close();
+            } catch (IOException e) {
+                // 预期：内容不足
+            }
+            exchange.close();
+            return;
+        }
+        out.write(content, start, length);
+        out.close();
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 文档修改锁测试：互斥、可重入、超时和跨进程文件锁
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+class DocumentLocksTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private final List<DocumentLocks> created = new ArrayList<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        created.forEach(DocumentLocks::stop);
+    }
+
+    @Test
+    void serializesConcurrentHoldersOfTheSameDocument() throws Exception {
+        DocumentLocks locks = locks(false, 30000);
+        int threads = 8;
+        int iterations = 2000;
+        int[] counter = new int[1];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < iterations; i++) {
+                    try (DocumentLocks.Handle lock = locks.lock("doc")) {
+                        counter[0]++;
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        assertEquals(threads * iterations, counter[0]);
+    }
+
+    @Test
+    void isReentrantForTheOwningThread() throws Exception {
+        DocumentLocks locks = locks(true, 200);
+        try (DocumentLocks.Handle outer = locks.lock("doc")) {
+            try (DocumentLocks.Handle inner = locks.lock("doc")) {
+                // 重入不等待，也不再加文件锁（同一进程内重复加文件锁会失败）
+                assertEquals(2L, locks.getStats().get("acquired"));
+                assertEquals(0L, locks.getStats().get("contended"));
+            }
+            // 内层释放后仍持有锁
+            assertThrows(ServiceUnavailableException.class, () -> lockInOtherThread(locks, "doc"));
+        }
+        // 全部释放后其他线程可以获得
+        lockInOtherThread(locks, "doc");
+    }
+
+    @Test
+    void timesOutWhenHeldByAnotherThread() throws Exception {
+        DocumentLocks locks = locks(false, 100);
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> holder = executor.submit(() -> {
+            try (DocumentLocks.Handle lock = locks.lock("doc")) {
+                held.countDown();
+                release.await();
+            }
+            return null;
+        });
+        held.await();
+
+        long start = System.nanoTime();
+        assertThrows(ServiceUnavailableException.class, () -> locks.lock("doc"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+        assertEquals(1L, locks.getStats().get("timeouts"));
+        assertEquals(1L, locks.getStats().get("contended"));
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        try (DocumentLocks.Handle lock = locks.lock("doc")) {
+            assertEquals(2L, locks.getStats().get("acquired"));
+        }
+    }
+
+    @Test
+    void crossProcessLocksExcludeEachOtherThroughTheLockFile() throws Exception {
+        // 两个实例共享同一存储目录，相当于两个节点
+        DocumentLocks first = locks(true, 150);
+        DocumentLocks second = locks(true, 150);
+        assertTrue(Files.isDirectory(uploadDir.resolve(DocumentLocks.LOCK_DIR)));
+
+        try (DocumentLocks.Handle lock = first.lock("doc")) {
+            assertThrows(ServiceUnavailableException.class, () -> second.lock("doc"));
+        }
+        try (DocumentLocks.Handle lock = second.lock("doc")) {
+            assertThrows(ServiceUnavailableException.class, () -> first.lock("doc"));
+        }
+
+        // 一方释放后另一方在等待中获得
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> holder = executor.submit(() -> {
+            try (DocumentLocks.Handle lock = first.lock("doc")) {
+                held.countDown();
+                release.await();
+            }
+            return null;
+        });
+        held.await();
+        DocumentLocks waiting = locks(true, 5000);
+        Future<?> waiter = executor.submit(() -> {
+            try (DocumentLocks.Handle lock = waiting.lock("doc")) {
+                return null;
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(waiter.isDone());
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        waiter.get(5, TimeUnit.SECONDS);
+    }
+
+    private void lockInOtherThread(DocumentLocks locks, String documentId) throws Exception {
+        Future<?> future = executor.submit(() -> {
+            try (DocumentLocks.Handle lock = locks.lock(documentId)) {
+                return null;
+            }
+        });
+        try {
+            future.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ServiceUnavailableException) {
+                throw (ServiceUnavailableException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private DocumentLocks locks(boolean crossProcess, long timeout) throws Exception {
+        OnlyOfficeProperties.Locks config = new OnlyOfficeProperties.Locks();
+        config.setCrossProcess(crossProcess);
+        config.setTimeout(timeout);
+        DocumentLocks locks = new DocumentLocks(uploadDir, config);
+        locks.start();
+        created.add(locks);
+        return locks;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.onlyoffice.service;
+
+import com.example.onlyoffice.config.OnlyOfficeProperties;
+import com.example.onlyoffice.exception.FileNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 同一文档上并发保存、删除和同名上传（压力测试）
+ *
+ * 检查：没有残留的临时文件；索引与磁盘一致；文档内容是某一次完整的保存（没有交错写入）；
+ * 同名上传分到了不同的文件名，没有互相覆盖。另检查名字像临时文件的文档在重启扫描后仍然可见
+ *
+ * @author Your Name
+ * @version 1.0.0
+ */
+class FileStorageServiceConcurrencyTest {
+
+    private static final int SIZE = 16 * 1024;
+
+    @TempDir
+    Path uploadDir;
+
+    private FileStorageService fileStorageService;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @BeforeEach
+    void setUp() {
+        fileStorageService = fileStorageService(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        fileStorageService.destroy();
+    }
+
+    @Test
+    void concurrentSavesDeletesAndUploadsOnOneDocumentStayConsistent() throws Exception {
+        run(fileStorageService);
+    }
+
+    @Test
+    void staysConsistentWithCrossProcessLocks() throws Exception {
+        fileStorageService.destroy();
+        fileStorageService = fileStorageService(true);
+        run(fileStorageService);
+    }
+
+    @Test
+    void documentsNamedLikeTempFilesSurviveARescan() throws Exception {
+        byte[] content = content((byte) 'a');
+        fileStorageService.saveFromStream(new ByteArrayInputStream(content), "q3_temp_report", "docx", content.length);
+
+        fileStorageService.destroy();
+        fileStorageService = fileStorageService(false);
+        assertEquals(List.of("q3_temp_report"), fileStorageService.listDocuments());
+    }
+
+    private void run(FileStorageService storage) throws Exception {
+        int savers = 4;
+        int deleters = 2;
+        int uploaders = 2;
+        int iterations = 100;
+        Set<String> uploadedIds = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < savers; t++) {
+            byte fill = (byte) ('a' + t);
+            futures.add(executor.submit(() -> {
+                start.await();
+                byte[] content = content(fill);
+                for (int i = 0; i < iterations; i++) {
+                    storage.saveFromStream(new ByteArrayInputStream(content), "doc", "docx", content.length);
+                }
+                return null;
+            }));
+        }
+        for (int t = 0; t < deleters; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < iterations; i++) {
+                    try {
+                        storage.deleteFile("doc", "docx");
+                    } catch (FileNotFoundException e) {
+                        // 已被删除
+                    }
+                }
+                return null;
+            }));
+        }
+        for (int t = 0; t < uploaders; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                byte[] content = content((byte) 'u');
+                // 与被删除的文档不同名：删除后再上传的同名文件本来就会复用原文件名
+                for (int i = 0; i < iterations; i++) {
+                    uploadedIds.add(storage.saveFile(
+                            new MockMultipartFile("file", "report.docx", "application/octet-stream", content)));
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+
+        try (Stream<Path> paths = Files.list(uploadDir.resolve(FileStorageService.TEMP_DIR))) {
+            List<Path> temps = paths.collect(Collectors.toList());
+            assertTrue(temps.isEmpty(), "残留临时文件: " + temps);
+        }
+
+        // 上传的同名文件都分到了不同的文件名，且都存在
+        assertEquals(uploaders * iterations, uploadedIds.size());
+        for (String documentId : uploadedIds) {
+            assertTrue(storage.fileExists(documentId, "docx"), "上传的文档不存在: " + documentId);
+        }
+
+        // 索引与磁盘一致，内容是某一次完整的保存
+        Path file = uploadDir.resolve("doc.docx");
+        DocumentIndex.Entry entry = storage.getDocument("doc", "docx");
+        assertEquals(Files.exists(file), entry != null, "索引与磁盘不一致");
+        if (entry != null) {
+            byte[] saved = Files.readAllBytes(file);
+            assertEquals(SIZE, saved.length);
+            assertEquals(SIZE, entry.getSize());
+            assertTrue(isUniform(saved), "文档内容交错");
+        }
+    }
+
+    private FileStorageService fileStorageService(boolean crossProcess) {
+        OnlyOfficeProperties properties = new OnlyOfficeProperties();
+        properties.getStorage().setUploadDir(uploadDir.toString());
+        properties.getStorage().getIndex().setWatch(false);
+        properties.getStorage().getLocks().setCrossProcess(crossProcess);
+        FileStorageService storage = new FileStorageService(properties, new ServiceMetrics(new SimpleMeterRegistry()));
+        storage.init();
+        return storage;
+    }
+
+    private static byte[] content(byte fill) {
+        byte[] content = new byte[SIZE];
+        Arrays.fill(content, fill);
+        return content;
+    }
+
+    private static boolean isUniform(byte[] content) {
+        for (byte b : content) {
+            if (b != content[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}